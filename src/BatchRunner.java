@@ -0,0 +1,242 @@
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.Supplier;
+
+// Represents a way of choosing the next move of a game
+interface IMovePolicy {
+  // the color (as an index into loc) to play next in the given game
+  int chooseMove(FloodGame game, Random rand);
+}
+
+// Plays a random color other than the current flooding color
+class RandomMovePolicy implements IMovePolicy {
+  public int chooseMove(FloodGame game, Random rand) {
+    if (game.numColors == 1) {
+      return 0;
+    }
+    int flood = game.board.colorIndexAt(0);
+    int choice = rand.nextInt(game.numColors - 1);
+    if (choice >= flood) {
+      return choice + 1;
+    }
+    else {
+      return choice;
+    }
+  }
+}
+
+// Plays the next color after the current flooding color that still has unflooded cells
+class CycleMovePolicy implements IMovePolicy {
+  public int chooseMove(FloodGame game, Random rand) {
+    int flood = game.board.colorIndexAt(0);
+    for (int k = 1; k < game.numColors; k += 1) {
+      int next = (flood + k) % game.numColors;
+      if (game.remainingCount(next) > 0) {
+        return next;
+      }
+    }
+    return flood;
+  }
+}
+
+// Plays the hinted color, looking the given number of moves ahead
+class HintMovePolicy implements IMovePolicy {
+  // How many moves ahead to look
+  int depth;
+
+  HintMovePolicy(int depth) {
+    this.depth = depth;
+  }
+
+  public int chooseMove(FloodGame game, Random rand) {
+    int best = game.hints().bestMove(this.depth);
+    if (best == -1) {
+      return game.board.colorIndexAt(0);
+    }
+    else {
+      return best;
+    }
+  }
+}
+
+// Represents the statistics gathered from a batch of games
+class BatchStats {
+  // How many games were played, and how many of them were won
+  long games;
+  long wins;
+  // The total number of moves over all games
+  long moves;
+  // How many games took each number of moves
+  long[] movesHistogram;
+  // How many games ended with each of the player levels
+  long[] levels = new long[BatchStats.LEVELS.length];
+  // How long the batch took to play, in nanoseconds
+  long elapsedNanos;
+
+  // The possible player levels, from best to worst
+  static final String[] LEVELS = { "FloodIt Master", "Expert", "Skilled", "Beginner", "", "Noob" };
+
+  BatchStats(int maxSteps) {
+    // a game ends at the latest one step past maxSteps
+    this.movesHistogram = new long[maxSteps + 2];
+  }
+
+  // EFFECT: records the result of the given finished game
+  void record(FloodGame game) {
+    this.games += 1;
+    if (game.allFloodedCheck()) {
+      this.wins += 1;
+    }
+    this.moves += game.steps;
+    this.movesHistogram[Math.min(game.steps, this.movesHistogram.length - 1)] += 1;
+    String level = game.playerLevel();
+    for (int k = 0; k < BatchStats.LEVELS.length; k += 1) {
+      if (BatchStats.LEVELS[k].equals(level)) {
+        this.levels[k] += 1;
+      }
+    }
+  }
+
+  // EFFECT: adds the statistics of the given batch to these
+  void merge(BatchStats other) {
+    this.games += other.games;
+    this.wins += other.wins;
+    this.moves += other.moves;
+    for (int k = 0; k < this.movesHistogram.length; k += 1) {
+      this.movesHistogram[k] += other.movesHistogram[k];
+    }
+    for (int k = 0; k < this.levels.length; k += 1) {
+      this.levels[k] += other.levels[k];
+    }
+  }
+
+  // the fraction of games that were won
+  double winRate() {
+    return (double) this.wins / Math.max(1, this.games);
+  }
+
+  // the average number of moves per game
+  double averageMoves() {
+    return (double) this.moves / Math.max(1, this.games);
+  }
+
+  // how many games were played per second
+  double gamesPerSecond() {
+    return this.games / Math.max(1e-9, this.elapsedNanos / 1e9);
+  }
+
+  // a one line summary of these statistics
+  public String toString() {
+    return String.format("%d games, %.1f%% won, %.2f moves/game, %.0f games/sec", this.games,
+        this.winRate() * 100, this.averageMoves(), this.gamesPerSecond());
+  }
+}
+
+// Plays large batches of games without drawing them, sharding the seeds across every
+// core of a fork-join pool. Each worker thread keeps one game and recolors its board
+// in place for every seed, so a batch allocates almost nothing per game
+class BatchRunner {
+  // Size * size will give us the gameboard
+  int size;
+  // keeps track of the number of colors
+  int numColors;
+  // Makes the flood engine for each worker's game
+  Supplier<IFloodEngine> engines;
+  // Chooses the moves of every game
+  IMovePolicy policy;
+  // The pool the games run on
+  ForkJoinPool pool;
+  // The game of each worker thread, made the first time the thread plays
+  ThreadLocal<FloodGame> games;
+
+  // The fewest seeds a task plays itself instead of splitting
+  static final int LEAF_SEEDS = 256;
+
+  BatchRunner(int size, int numColors, Supplier<IFloodEngine> engines, IMovePolicy policy,
+      int threads) {
+    this.size = size;
+    this.numColors = numColors;
+    this.engines = engines;
+    this.policy = policy;
+    this.pool = new ForkJoinPool(threads);
+    this.games = ThreadLocal.withInitial(
+        () -> new FloodGame(this.size, this.numColors, this.engines.get()));
+  }
+
+  // plays one game for every seed from the first (inclusive) to the last (exclusive)
+  // and gathers their statistics
+  BatchStats run(long firstSeed, long lastSeed) {
+    long start = System.nanoTime();
+    BatchStats result = this.pool.invoke(new BatchTask(this, firstSeed, lastSeed));
+    result.elapsedNanos = System.nanoTime() - start;
+    return result;
+  }
+
+  // EFFECT: plays the games of the given seeds on this thread's game, recording them
+  // in the given statistics
+  void play(long firstSeed, long lastSeed, BatchStats stats) {
+    FloodGame game = this.games.get();
+    for (long seed = firstSeed; seed < lastSeed; seed += 1) {
+      game.restart(seed);
+      Random rand = new Random(~seed);
+      while (!game.isOver()) {
+        game.applyMove(this.policy.chooseMove(game, rand));
+      }
+      stats.record(game);
+    }
+  }
+
+  // EFFECT: stops the threads of this runner
+  void shutdown() {
+    this.pool.shutdown();
+  }
+
+  // plays a batch from the command line: size, number of colors, number of games and,
+  // optionally, the number of threads
+  public static void main(String[] args) {
+    int size = Integer.parseInt(args[0]);
+    int numColors = Integer.parseInt(args[1]);
+    long count = Long.parseLong(args[2]);
+    int threads = Runtime.getRuntime().availableProcessors();
+    if (args.length > 3) {
+      threads = Integer.parseInt(args[3]);
+    }
+    BatchRunner runner = new BatchRunner(size, numColors, () -> new FrontierFloodEngine(),
+        new CycleMovePolicy(), threads);
+    System.out.println(threads + " threads: " + runner.run(0, count));
+    runner.shutdown();
+  }
+}
+
+// Splits a range of seeds in half until it is small enough to play directly
+class BatchTask extends RecursiveTask<BatchStats> {
+  // The runner whose games this task plays
+  BatchRunner runner;
+  // The seeds of this task, from first (inclusive) to last (exclusive)
+  long firstSeed;
+  long lastSeed;
+
+  BatchTask(BatchRunner runner, long firstSeed, long lastSeed) {
+    this.runner = runner;
+    this.firstSeed = firstSeed;
+    this.lastSeed = lastSeed;
+  }
+
+  // plays the seeds of this task, in parallel halves when there are many
+  protected BatchStats compute() {
+    if (this.lastSeed - this.firstSeed <= BatchRunner.LEAF_SEEDS) {
+      BatchStats stats = new BatchStats(this.runner.games.get().maxSteps);
+      this.runner.play(this.firstSeed, this.lastSeed, stats);
+      return stats;
+    }
+    else {
+      long middle = this.firstSeed + ((this.lastSeed - this.firstSeed) / 2);
+      BatchTask left = new BatchTask(this.runner, this.firstSeed, middle);
+      left.fork();
+      BatchStats result = new BatchTask(this.runner, middle, this.lastSeed).compute();
+      result.merge(left.join());
+      return result;
+    }
+  }
+}
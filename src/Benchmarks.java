@@ -0,0 +1,308 @@
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.regex.Pattern;
+
+import javalib.worldimages.*;
+
+// Represents one operation to time, run over and over on a game of a given size
+interface IBenchmark {
+  // the name the results of this benchmark are reported under
+  String name();
+
+  // EFFECT: prepares a game with the given size and number of colors to run on
+  void setUp(int size, int numColors);
+
+  // EFFECT: runs the operation once, returning something computed from it so that
+  // the work cannot be optimized away
+  long run();
+
+  // EFFECT: lets go of the game set up for the last run
+  void tearDown();
+}
+
+// A benchmark that runs on a whole FloodItWorld dealt from a fixed seed. The world
+// does no work in the background, so nothing but the benchmark runs while it is timed
+abstract class WorldBenchmark implements IBenchmark {
+  // The world the benchmark runs on
+  FloodItWorld world;
+  // Picks the color of each move
+  IMovePolicy policy = new CycleMovePolicy();
+
+  // The seed every world is dealt from
+  static final long SEED = 20200401L;
+
+  public void setUp(int size, int numColors) {
+    this.world = new FloodItWorld(new FloodGame(size, numColors,
+        FloodItWorld.defaultEngine(size), WorldBenchmark.SEED), false);
+  }
+
+  public void tearDown() {
+    this.world.shutdown();
+    this.world = null;
+  }
+
+  // EFFECT: plays one move the way a click does, starting the game over once it ends
+  void move() {
+    if (this.world.game.isOver()) {
+      this.world.game.restart(WorldBenchmark.SEED);
+    }
+    this.world.game.applyMove(this.policy.chooseMove(this.world.game, null));
+  }
+}
+
+// Deals a new board and absorbs the first region, the work of starting a game. No
+// world is kept between runs, since every run builds its own game
+class BuildBenchmark implements IBenchmark {
+  // The size and number of colors of the games built
+  int size;
+  int numColors;
+
+  public String name() {
+    return "build";
+  }
+
+  public void setUp(int size, int numColors) {
+    this.size = size;
+    this.numColors = numColors;
+  }
+
+  public long run() {
+    return new FloodGame(this.size, this.numColors, FloodItWorld.defaultEngine(this.size),
+        WorldBenchmark.SEED).floodedCount();
+  }
+
+  public void tearDown() {
+    // nothing is kept between runs
+  }
+}
+
+// Plays one move, then lets a tick bring the flood to rest
+class MoveBenchmark extends WorldBenchmark {
+  public String name() {
+    return "move";
+  }
+
+  public long run() {
+    this.move();
+    this.world.updateGame();
+    return this.world.floodedCount();
+  }
+}
+
+// Checks whether the whole board is flooded
+class AllFloodedBenchmark extends WorldBenchmark {
+  public String name() {
+    return "allFloodedCheck";
+  }
+
+  public long run() {
+    if (this.world.allFloodedCheck()) {
+      return 1;
+    }
+    else {
+      return 0;
+    }
+  }
+}
+
+// Finds the cell under a position, walking the positions across the board
+class CellLookupBenchmark extends WorldBenchmark {
+  // The next position to look up
+  int next;
+
+  public String name() {
+    return "getCellFromPosn";
+  }
+
+  public long run() {
+    int side = (this.world.size * 50) + 100;
+    this.next = (this.next + 37) % (side * side);
+    Cell cell = this.world.getCellFromPosn(new Posn(this.next / side, this.next % side));
+    if (cell == null) {
+      return 0;
+    }
+    else {
+      return cell.x;
+    }
+  }
+}
+
+// Plays a move and draws the board, so only the squares it absorbed are painted
+class DrawBoardBenchmark extends WorldBenchmark {
+  public String name() {
+    return "drawCurrentBoard";
+  }
+
+  public long run() {
+    this.move();
+    return this.world.drawCurrentBoard().hashCode();
+  }
+}
+
+// Plays a move and builds the scene of the whole window again
+class SceneBenchmark extends WorldBenchmark {
+  public String name() {
+    return "makeScene";
+  }
+
+  public long run() {
+    this.move();
+    this.world.markDirty();
+    return this.world.makeScene().hashCode();
+  }
+}
+
+// Represents the measurements of one benchmark on one game size
+class BenchmarkResult {
+  // What was measured, and on what game
+  String name;
+  int size;
+  int numColors;
+  // How many operations ran per second, and how many bytes each one allocated (or -1
+  // if the JVM cannot tell)
+  double opsPerSecond;
+  double bytesPerOp;
+
+  BenchmarkResult(String name, int size, int numColors, double opsPerSecond,
+      double bytesPerOp) {
+    this.name = name;
+    this.size = size;
+    this.numColors = numColors;
+    this.opsPerSecond = opsPerSecond;
+    this.bytesPerOp = bytesPerOp;
+  }
+
+  // one line of the results table
+  public String toString() {
+    return String.format("%-18s %6d %6d %16.1f %14.1f", this.name, this.size, this.numColors,
+        this.opsPerSecond, this.bytesPerOp);
+  }
+}
+
+// Times the hot paths of the game for every size and number of colors asked for. Each
+// benchmark warms up for a few iterations, then runs for a few measured iterations of
+// a fixed length, counting operations and the bytes the thread allocated along the way
+class BenchmarkRunner {
+  // The benchmarks to run
+  ArrayList<IBenchmark> benchmarks = new ArrayList<IBenchmark>();
+  // How many warm up and measured iterations to run, and how long each one lasts
+  int warmups;
+  int iterations;
+  long iterationNanos;
+  // Collects what every run returns, so the runs cannot be optimized away
+  long sink;
+
+  // The sizes and numbers of colors measured when none are given
+  static final int[] SIZES = { 2, 14, 100, 500, 2000 };
+  static final int[] COLORS = { 1, 3, 6 };
+
+  BenchmarkRunner(int warmups, int iterations, long iterationNanos) {
+    this.warmups = warmups;
+    this.iterations = iterations;
+    this.iterationNanos = iterationNanos;
+    this.benchmarks.add(new BuildBenchmark());
+    this.benchmarks.add(new MoveBenchmark());
+    this.benchmarks.add(new AllFloodedBenchmark());
+    this.benchmarks.add(new CellLookupBenchmark());
+    this.benchmarks.add(new DrawBoardBenchmark());
+    this.benchmarks.add(new SceneBenchmark());
+  }
+
+  // runs every benchmark whose name matches the given pattern over every given size
+  // and number of colors
+  ArrayList<BenchmarkResult> runAll(Pattern names, int[] sizes, int[] colors) {
+    ArrayList<BenchmarkResult> results = new ArrayList<BenchmarkResult>();
+    for (IBenchmark benchmark : this.benchmarks) {
+      if (names.matcher(benchmark.name()).find()) {
+        for (int size : sizes) {
+          for (int numColors : colors) {
+            results.add(this.measure(benchmark, size, numColors));
+          }
+        }
+      }
+    }
+    return results;
+  }
+
+  // measures the given benchmark on a game of the given size and number of colors
+  BenchmarkResult measure(IBenchmark benchmark, int size, int numColors) {
+    benchmark.setUp(size, numColors);
+    for (int k = 0; k < this.warmups; k += 1) {
+      this.iterate(benchmark);
+    }
+    long ops = 0;
+    long start = System.nanoTime();
+    long allocated = BenchmarkRunner.allocatedBytes();
+    for (int k = 0; k < this.iterations; k += 1) {
+      ops += this.iterate(benchmark);
+    }
+    long elapsed = System.nanoTime() - start;
+    long bytes = BenchmarkRunner.allocatedBytes() - allocated;
+    benchmark.tearDown();
+    double bytesPerOp = -1;
+    if (allocated >= 0) {
+      bytesPerOp = (double) bytes / ops;
+    }
+    return new BenchmarkResult(benchmark.name(), size, numColors, ops / (elapsed / 1e9),
+        bytesPerOp);
+  }
+
+  // runs the given benchmark for one iteration, returning how many times it ran
+  long iterate(IBenchmark benchmark) {
+    long deadline = System.nanoTime() + this.iterationNanos;
+    long ops = 0;
+    // check the clock every few runs, so that fast operations are not swamped by it
+    do {
+      for (int k = 0; k < 16; k += 1) {
+        this.sink += benchmark.run();
+      }
+      ops += 16;
+    } while (System.nanoTime() < deadline);
+    return ops;
+  }
+
+  // the bytes allocated by this thread so far, or -1 if the JVM cannot tell
+  static long allocatedBytes() {
+    java.lang.management.ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+    if (threads instanceof com.sun.management.ThreadMXBean) {
+      return ((com.sun.management.ThreadMXBean) threads)
+          .getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+    else {
+      return -1;
+    }
+  }
+
+  // the numbers in the given comma separated list
+  static int[] parseList(String list) {
+    String[] parts = list.split(",");
+    int[] result = new int[parts.length];
+    for (int k = 0; k < parts.length; k += 1) {
+      result[k] = Integer.parseInt(parts[k].trim());
+    }
+    return result;
+  }
+
+  // runs the benchmarks from the command line: optionally a pattern of benchmark names,
+  // a comma separated list of sizes and one of numbers of colors
+  public static void main(String[] args) {
+    Pattern names = Pattern.compile(".*");
+    int[] sizes = BenchmarkRunner.SIZES;
+    int[] colors = BenchmarkRunner.COLORS;
+    if (args.length > 0) {
+      names = Pattern.compile(args[0]);
+    }
+    if (args.length > 1) {
+      sizes = BenchmarkRunner.parseList(args[1]);
+    }
+    if (args.length > 2) {
+      colors = BenchmarkRunner.parseList(args[2]);
+    }
+    BenchmarkRunner runner = new BenchmarkRunner(3, 5, 200000000L);
+    System.out.println(String.format("%-18s %6s %6s %16s %14s", "benchmark", "size", "colors",
+        "ops/s", "bytes/op"));
+    for (BenchmarkResult result : runner.runAll(names, sizes, colors)) {
+      System.out.println(result);
+    }
+  }
+}
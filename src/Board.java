@@ -0,0 +1,381 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import java.awt.Color;
+
+// Represents the squares of a size x size game board in compact form: one palette
+// index per square and a bitset of the flooded squares. Squares are numbered column
+// by column, so the square at (x, y) lives at index (x * size) + y, and the neighbors
+// of a square come from the adjacency table shared by every board of its shape
+class Board {
+  // Size * size will give us the gameboard
+  int size;
+  // The colors the palette indices refer to
+  ArrayList<Color> palette;
+  // The shape of this board, and the neighbors of its squares, or null if the board
+  // is too big for a table and works them out from the shape
+  ITopology topology;
+  Adjacency adjacency;
+  // The palette index of every square. Flooded squares take the color of square 0
+  byte[] colors;
+  // One bit per square, set when the square has been flooded
+  long[] flooded;
+  // How many squares have been flooded
+  int floodedCount;
+  // How many unflooded squares are left of every palette index
+  int[] remaining;
+  // The snapshot whose chunks this board still matches, except for the dirty ones,
+  // or null if none is known to match
+  BoardSnapshot base;
+  // Whether every chunk of squares has changed since the base snapshot
+  boolean[] dirty;
+  // How many times the squares of this board have been replaced all at once, so that
+  // whatever keeps a copy of them knows to look at every square again
+  int replaced;
+  // Whether the squares are in the arrays of this board, so that copying them for the
+  // solver or dealing them ahead of time is cheap
+  boolean onHeap;
+
+  // How many squares there are in a chunk shared between snapshots, as a power of two
+  static final int CHUNK_BITS = 10;
+  // The most neighbors a square can have, whatever the shape of the board
+  static final int MAX_DEGREE = 8;
+
+  Board(int size, ArrayList<Color> palette) {
+    this(size, palette, new GridTopology());
+  }
+
+  // a board of the given shape
+  Board(int size, ArrayList<Color> palette, ITopology topology) {
+    this(size, palette, topology, true);
+  }
+
+  // a board of the given shape, with arrays for its squares on the heap unless it is a
+  // kind of board that keeps them somewhere else
+  Board(int size, ArrayList<Color> palette, ITopology topology, boolean onHeap) {
+    this.size = size;
+    this.palette = palette;
+    this.topology = topology;
+    this.adjacency = Adjacency.of(topology, size);
+    this.onHeap = onHeap;
+    if (onHeap) {
+      this.colors = new byte[size * size];
+      this.flooded = new long[((size * size) + 63) >>> 6];
+    }
+    this.floodedCount = 0;
+    this.remaining = new int[palette.size()];
+    // every square starts out with the first color
+    this.remaining[0] = size * size;
+    this.dirty = new boolean[(((size * size) - 1) >>> Board.CHUNK_BITS) + 1];
+  }
+
+  // EFFECT: colors every square the way the given game deals them from the given seed,
+  // and leaves only the first square flooded
+  void deal(FloodGame game, long seed, boolean parallel) {
+    game.dealColors(this.colors, seed, parallel);
+    this.startOver();
+  }
+
+  // the palette index every square was dealt, or was last set to, in a new array
+  byte[] dealtColors() {
+    return this.colors.clone();
+  }
+
+  // EFFECT: replaces the colors of this board with the given ones and leaves only the
+  // first square flooded
+  void load(byte[] colors) {
+    System.arraycopy(colors, 0, this.colors, 0, this.colors.length);
+    this.startOver();
+  }
+
+  // EFFECT: unfloods every square but the first and counts the colors again, after the
+  // colors array has been written directly
+  void startOver() {
+    Arrays.fill(this.flooded, 0);
+    Arrays.fill(this.remaining, 0);
+    for (int i = 0; i < this.colors.length; i += 1) {
+      this.remaining[this.colors[i]] += 1;
+    }
+    this.floodedCount = 0;
+    // the colors were written without marking any chunk
+    this.base = null;
+    this.replaced += 1;
+    this.setFlooded(0);
+  }
+
+  // the number of squares on this board
+  int cellCount() {
+    return this.colors.length;
+  }
+
+  // is the square at the given index flooded?
+  boolean isFlooded(int index) {
+    return (this.flooded[index >>> 6] & (1L << index)) != 0;
+  }
+
+  // the index of the first flooded square at or after the given one, or -1 if there
+  // is none
+  int nextFlooded(int from) {
+    if (from >= this.cellCount()) {
+      return -1;
+    }
+    int w = from >>> 6;
+    long word = this.flooded[w] & (-1L << from);
+    while (word == 0) {
+      w += 1;
+      if (w == this.flooded.length) {
+        return -1;
+      }
+      word = this.flooded[w];
+    }
+    return (w << 6) + Long.numberOfTrailingZeros(word);
+  }
+
+  // EFFECT: marks the square at the given index as flooded
+  void setFlooded(int index) {
+    if (!this.isFlooded(index)) {
+      this.flooded[index >>> 6] |= 1L << index;
+      this.dirty[index >>> Board.CHUNK_BITS] = true;
+      this.floodedCount += 1;
+      this.remaining[this.colors[index]] -= 1;
+    }
+  }
+
+  // EFFECT: marks the square at the given index as not flooded
+  void clearFlooded(int index) {
+    if (this.isFlooded(index)) {
+      this.flooded[index >>> 6] &= ~(1L << index);
+      this.dirty[index >>> Board.CHUNK_BITS] = true;
+      this.floodedCount -= 1;
+      this.remaining[this.colors[index]] += 1;
+    }
+  }
+
+  // the palette index of the square at the given index, flooded squares all share
+  // the flooding color
+  int colorIndexAt(int index) {
+    if (this.isFlooded(index)) {
+      return this.colors[0];
+    }
+    else {
+      return this.colors[index];
+    }
+  }
+
+  // the color of the square at the given index
+  Color colorAt(int index) {
+    return this.palette.get(this.colorIndexAt(index));
+  }
+
+  // EFFECT: sets the palette index of the square at the given index
+  void setColorIndex(int index, int colorIndex) {
+    if (!this.isFlooded(index)) {
+      this.remaining[this.colors[index]] -= 1;
+      this.remaining[colorIndex] += 1;
+    }
+    this.colors[index] = (byte) colorIndex;
+    this.dirty[index >>> Board.CHUNK_BITS] = true;
+  }
+
+  // EFFECT: writes the indices of the squares adjacent to the given one into the
+  // given buffer (of length at least MAX_DEGREE), returning how many there are
+  int neighbors(int index, int[] into) {
+    if (this.adjacency == null) {
+      return this.topology.neighbors(this.size, index / this.size, index % this.size, into);
+    }
+    int from = this.adjacency.start[index];
+    int count = this.adjacency.start[index + 1] - from;
+    System.arraycopy(this.adjacency.adjacent, from, into, 0, count);
+    return count;
+  }
+
+  // EFFECT: floods the unflooded neighbors of the square at the given index that
+  // have the given color
+  void updateNeighbors(int index, int colorIndex) {
+    int[] adjacent = new int[Board.MAX_DEGREE];
+    int count = this.neighbors(index, adjacent);
+    for (int k = 0; k < count; k += 1) {
+      this.floodIfMatching(adjacent[k], colorIndex);
+    }
+  }
+
+  // EFFECT: floods the square at the given index if it has the given color
+  void floodIfMatching(int index, int colorIndex) {
+    if (!this.isFlooded(index) && this.colors[index] == colorIndex) {
+      this.setFlooded(index);
+    }
+  }
+
+  // has every square on this board been flooded?
+  boolean allFlooded() {
+    return this.floodedCount == this.colors.length;
+  }
+
+  // how many colors still have unflooded squares?
+  int colorsLeft() {
+    int result = 0;
+    for (int count : this.remaining) {
+      if (count > 0) {
+        result += 1;
+      }
+    }
+    return result;
+  }
+
+  // Produces a Cell view of the square at the given index. The view has no adjacent
+  // cells, since neighbors are derived from the index
+  Cell get(int index) {
+    return new Cell(index / this.size, index % this.size, this.colorAt(index),
+        this.isFlooded(index), null, null, null, null);
+  }
+
+  // EFFECT: writes the color and flooded state of the given Cell view back into the
+  // square at the given index
+  void set(int index, Cell cell) {
+    this.setColorIndex(index, this.palette.indexOf(cell.color));
+    if (cell.flooded) {
+      this.setFlooded(index);
+    }
+    else {
+      this.clearFlooded(index);
+    }
+  }
+
+  // a new raster that paints this board
+  BoardRaster newRaster() {
+    return new BoardRaster();
+  }
+
+  // the number of chunks of squares on this board
+  int chunkCount() {
+    return this.dirty.length;
+  }
+
+  // EFFECT: takes a snapshot of this board, copying only the chunks that changed since
+  // the last snapshot taken or restored and sharing the rest with it
+  BoardSnapshot snapshot() {
+    int chunks = this.chunkCount();
+    byte[][] colorChunks = new byte[chunks][];
+    long[][] floodedChunks = new long[chunks][];
+    for (int k = 0; k < chunks; k += 1) {
+      if (this.base != null && !this.dirty[k]) {
+        colorChunks[k] = this.base.colors[k];
+        floodedChunks[k] = this.base.flooded[k];
+      }
+      else {
+        int start = k << Board.CHUNK_BITS;
+        int end = Math.min(this.colors.length, start + (1 << Board.CHUNK_BITS));
+        colorChunks[k] = Arrays.copyOfRange(this.colors, start, end);
+        floodedChunks[k] = Arrays.copyOfRange(this.flooded, start >>> 6, (end + 63) >>> 6);
+        this.dirty[k] = false;
+      }
+    }
+    this.base = new BoardSnapshot(this.size, colorChunks, floodedChunks, this.floodedCount,
+        this.remaining.clone());
+    return this.base;
+  }
+
+  // EFFECT: puts this board back in the state of the given snapshot of it, copying only
+  // the chunks that differ from it
+  void restore(BoardSnapshot snapshot) {
+    for (int k = 0; k < this.chunkCount(); k += 1) {
+      if (this.base == null || this.dirty[k] || this.base.colors[k] != snapshot.colors[k]
+          || this.base.flooded[k] != snapshot.flooded[k]) {
+        int start = k << Board.CHUNK_BITS;
+        System.arraycopy(snapshot.colors[k], 0, this.colors, start, snapshot.colors[k].length);
+        System.arraycopy(snapshot.flooded[k], 0, this.flooded, start >>> 6,
+            snapshot.flooded[k].length);
+        this.dirty[k] = false;
+      }
+    }
+    this.floodedCount = snapshot.floodedCount;
+    System.arraycopy(snapshot.remaining, 0, this.remaining, 0, this.remaining.length);
+    this.base = snapshot;
+    this.replaced += 1;
+  }
+}
+
+// Represents the state of a Board at one moment, split into chunks of squares that
+// are never changed once made. Snapshots taken one after the other share every chunk
+// that did not change in between, so forking the state of a game costs a pointer per
+// chunk, and keeping many snapshots costs memory only for the chunks they changed
+class BoardSnapshot {
+  // Size * size will give us the gameboard
+  int size;
+  // The palette indices of the squares, one array per chunk
+  byte[][] colors;
+  // The flooded bits of the squares, one array of words per chunk
+  long[][] flooded;
+  // How many squares are flooded
+  int floodedCount;
+  // How many unflooded squares are left of every palette index
+  int[] remaining;
+
+  BoardSnapshot(int size, byte[][] colors, long[][] flooded, int floodedCount,
+      int[] remaining) {
+    this.size = size;
+    this.colors = colors;
+    this.flooded = flooded;
+    this.floodedCount = floodedCount;
+    this.remaining = remaining;
+  }
+
+  // a new board with the given palette and shape that this snapshot can be restored to
+  Board newBoard(ArrayList<Color> palette, ITopology topology) {
+    return new Board(this.size, palette, topology);
+  }
+
+  // the palette index of the square at the given index, flooded squares all share
+  // the flooding color
+  int colorIndexAt(int index) {
+    int k = index >>> Board.CHUNK_BITS;
+    int offset = index & ((1 << Board.CHUNK_BITS) - 1);
+    if ((this.flooded[k][offset >>> 6] & (1L << offset)) != 0) {
+      return this.colors[0][0];
+    }
+    else {
+      return this.colors[k][offset];
+    }
+  }
+}
+
+// Represents a growable list of square indices, reused between moves so that a flood
+// does not allocate
+class IndexList {
+  int[] items;
+  int count;
+
+  IndexList() {
+    this.items = new int[16];
+    this.count = 0;
+  }
+
+  // the number of indices in this list
+  int size() {
+    return this.count;
+  }
+
+  // is this list empty?
+  boolean isEmpty() {
+    return this.count == 0;
+  }
+
+  // the index at the given position of this list
+  int get(int position) {
+    return this.items[position];
+  }
+
+  // EFFECT: adds the given index to the end of this list
+  void add(int index) {
+    if (this.count == this.items.length) {
+      this.items = Arrays.copyOf(this.items, this.count * 2);
+    }
+    this.items[this.count] = index;
+    this.count += 1;
+  }
+
+  // EFFECT: empties this list, keeping its storage
+  void clear() {
+    this.count = 0;
+  }
+}
@@ -0,0 +1,111 @@
+import java.util.concurrent.ArrayBlockingQueue;
+
+// Represents the colors of a board dealt ahead of time, the seed they came from, and
+// the restart of the game they were dealt for
+class DealtBoard {
+  // The seed the colors were dealt from, and the restart they were dealt for
+  long seed;
+  int restart;
+  // The palette index of every square
+  byte[] colors;
+
+  DealtBoard(long seed, byte[] colors) {
+    this.seed = seed;
+    this.colors = colors;
+  }
+}
+
+// Deals boards for a game on a background thread, keeping a few of them ready so that
+// restarting only copies colors. The color arrays are handed back once they have been
+// loaded and dealt again, so a pool stops allocating once it is full. A restart never
+// waits for the pool: if its board is not ready it is dealt by the game, and the pool
+// skips ahead past it
+class BoardPool {
+  // The game whose rules deal the boards
+  FloodGame game;
+  // The restart of the game the next board is dealt for, only ever used by the
+  // dealing thread
+  int nextRestart;
+  // The first restart whose board is still wanted, after restarts that were dealt
+  // without the pool
+  volatile int wanted;
+  // The boards ready to be played, oldest first
+  ArrayBlockingQueue<DealtBoard> ready;
+  // The boards that have been loaded and can be dealt again
+  ArrayBlockingQueue<DealtBoard> free;
+  // The thread that deals the boards, and whether it was told to stop
+  Thread dealer;
+  volatile boolean stopped;
+
+  // Handed out in place of a board once the pool has stopped
+  static final DealtBoard STOPPED = new DealtBoard(0, new byte[0]);
+
+  // deals the boards of the restarts of the given game from the given one on
+  BoardPool(FloodGame game, int capacity, int firstRestart) {
+    this.game = game;
+    this.nextRestart = firstRestart;
+    this.ready = new ArrayBlockingQueue<DealtBoard>(capacity);
+    this.free = new ArrayBlockingQueue<DealtBoard>(capacity + 1);
+    this.dealer = new Thread(() -> this.fill(), "floodit-board-pool");
+    this.dealer.setDaemon(true);
+    this.dealer.start();
+  }
+
+  // EFFECT: deals boards until this pool is stopped, waiting whenever it is full. Once
+  // stopped, the boards not taken yet are dropped for the mark that the pool stopped
+  void fill() {
+    int cells = this.game.size * this.game.size;
+    try {
+      while (true) {
+        DealtBoard next = this.free.poll();
+        if (next == null) {
+          next = new DealtBoard(0, new byte[cells]);
+        }
+        // boards for restarts dealt without the pool would only be thrown away
+        this.nextRestart = Math.max(this.nextRestart, this.wanted);
+        next.restart = this.nextRestart;
+        next.seed = this.game.restartSeed(this.nextRestart);
+        this.nextRestart += 1;
+        this.game.dealColors(next.colors, next.seed, false);
+        this.ready.put(next);
+      }
+    }
+    catch (InterruptedException e) {
+      // stopped: wake up whoever is waiting for a board. This is the only thread adding
+      // to ready, so the mark always fits
+      this.ready.clear();
+      this.ready.offer(BoardPool.STOPPED);
+    }
+  }
+
+  // EFFECT: hands back the boards dealt for restarts before the given one, and returns
+  // the board ready for the given restart without waiting, or null if it is not ready
+  // yet or this pool has stopped. The game deals a board that is not ready itself, so
+  // the pool skips ahead to the restart after it
+  DealtBoard poll(int restart) {
+    if (this.stopped) {
+      return null;
+    }
+    DealtBoard next = this.ready.poll();
+    while (next != null && next != BoardPool.STOPPED && next.restart < restart) {
+      this.recycle(next);
+      next = this.ready.poll();
+    }
+    if (next != null && next != BoardPool.STOPPED && next.restart == restart) {
+      return next;
+    }
+    this.wanted = restart + 1;
+    return null;
+  }
+
+  // EFFECT: hands the given board back to be dealt again
+  void recycle(DealtBoard board) {
+    this.free.offer(board);
+  }
+
+  // EFFECT: stops dealing boards, after which no more are handed out
+  void stop() {
+    this.stopped = true;
+    this.dealer.interrupt();
+  }
+}
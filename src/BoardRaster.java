@@ -0,0 +1,91 @@
+import java.util.Arrays;
+
+import javalib.worldimages.*;
+
+// Paints a Board into a reusable pixel buffer, one pixel per square, and shows it
+// scaled up by 50 as a single image. Only the squares whose color changed since the
+// last paint are painted again
+class BoardRaster {
+  // The board painted last
+  Board board;
+  // One pixel per square, at (x, y) for the square at index (x * size) + y
+  ComputedPixelImage pixels;
+  // The pixels scaled up to the size of the squares on screen
+  WorldImage image;
+  // The palette index painted for every square
+  byte[] painted;
+  // The flooding color when the board was last painted
+  int paintedFlood;
+  // The number of flooded squares when the board was last painted
+  int paintedCount;
+  // How many times the squares of the board had been replaced when it was last painted
+  int paintedReplaced;
+
+  // EFFECT: brings the pixels up to date with the given board, then produces the
+  // image of it
+  WorldImage draw(Board board) {
+    if (board != this.board || this.painted.length != board.cellCount()
+        || board.replaced != this.paintedReplaced) {
+      this.paintAll(board);
+    }
+    else if (board.colorIndexAt(0) != this.paintedFlood
+        || board.floodedCount != this.paintedCount) {
+      this.paintFlooded(board);
+    }
+    return this.image;
+  }
+
+  // EFFECT: paints every square of the given board, into the same pixel buffer when
+  // the board was recolored in place and into a fresh one otherwise
+  void paintAll(Board board) {
+    if (board != this.board || this.painted.length != board.cellCount()) {
+      this.board = board;
+      this.pixels = new ComputedPixelImage(board.size, board.size);
+      this.image = new ScaleImage(this.pixels, 50).movePinholeTo(new Posn(0, 0));
+      this.painted = new byte[board.cellCount()];
+      Arrays.fill(this.painted, (byte) -1);
+    }
+    this.paintedReplaced = board.replaced;
+    for (int i = 0; i < board.cellCount(); i += 1) {
+      this.paint(board, i);
+    }
+    this.paintedFlood = board.colorIndexAt(0);
+    this.paintedCount = board.floodedCount;
+  }
+
+  // EFFECT: repaints the flooded squares that changed color, the only ones that can
+  // change between moves
+  void paintFlooded(Board board) {
+    int flood = board.colorIndexAt(0);
+    for (int i = board.nextFlooded(0); i >= 0; i = board.nextFlooded(i + 1)) {
+      if (this.painted[i] != flood) {
+        this.paint(board, i);
+      }
+    }
+    this.paintedFlood = flood;
+    this.paintedCount = board.floodedCount;
+  }
+
+  // has this raster painted every square of the given board as it is now, one by one,
+  // so that a wave can reveal them one by one?
+  boolean paints(Board board) {
+    return this.board == board && board.replaced == this.paintedReplaced;
+  }
+
+  // EFFECT: paints again the given squares of the board last painted, which may have
+  // been unflooded since
+  void repaint(IndexList squares) {
+    for (int k = 0; k < squares.size(); k += 1) {
+      this.paint(this.board, squares.get(k));
+    }
+  }
+
+  // EFFECT: paints the square at the given index if its color changed
+  void paint(Board board, int index) {
+    int colorIndex = board.colorIndexAt(index);
+    if (this.painted[index] != colorIndex) {
+      this.painted[index] = (byte) colorIndex;
+      this.pixels.setPixel(index / board.size, index % board.size, board.palette.get(colorIndex));
+    }
+  }
+}
@@ -0,0 +1,154 @@
+import java.util.Arrays;
+
+// Reveals the squares recolored by a move a few at a time, nearest to the first square
+// first, so a flood spreads across the screen as a wave. The search for the squares of
+// the wave is spread across the ticks along with revealing them, and a wave takes at
+// most WAVE_TICKS ticks whatever the size of the flood, so a click costs the same on
+// any board. The game itself is final as soon as the move is played: the animator only
+// holds back the squares of the raster that have not been revealed yet
+class FloodAnimator {
+  // The fewest squares revealed per tick, and how long revealing them may take
+  int cellsPerTick;
+  long budgetNanos;
+  // The most flooded squares a wave is shown for. A bigger flood is painted at once
+  int maxWave;
+  // The squares of the wave found so far, in the order they are revealed, how many
+  // have been, how many the current wave reveals per tick, and for how many ticks it
+  // has been running
+  IndexList wave = new IndexList();
+  int revealed;
+  int perTick;
+  int ticks;
+  // The board being revealed, the raster it is revealed on, and its flooding color
+  Board board;
+  BoardRaster raster;
+  int flood;
+  // One bit per square, set once the square has been reached by the search
+  long[] seen;
+  // The squares reached by the search, in order of their distance from the first one,
+  // and how many of them have been searched from
+  IndexList queue = new IndexList();
+  int searched;
+  // Scratch buffer for the neighbors of a square
+  int[] adjacent = new int[Board.MAX_DEGREE];
+
+  // The fewest squares revealed per tick, and the time they may take, unless others
+  // are given
+  static final int CELLS_PER_TICK = 256;
+  static final long BUDGET_NANOS = 4000000L;
+  // The most ticks a wave takes, and the most flooded squares a wave is shown for
+  // unless another number is given
+  static final int WAVE_TICKS = 8;
+  static final int MAX_WAVE = 1 << 16;
+
+  FloodAnimator() {
+    this(FloodAnimator.CELLS_PER_TICK, FloodAnimator.BUDGET_NANOS);
+  }
+
+  FloodAnimator(int cellsPerTick, long budgetNanos) {
+    this.cellsPerTick = cellsPerTick;
+    this.budgetNanos = budgetNanos;
+    this.maxWave = FloodAnimator.MAX_WAVE;
+  }
+
+  // is there a wave still being searched for or revealed?
+  boolean isRunning() {
+    return this.revealed < this.wave.size() || this.searched < this.queue.size();
+  }
+
+  // EFFECT: starts the wave of the move just played on the given board: the flooded
+  // squares whose color on the given raster changed, by their distance from the first
+  // square through the flooded region. Only the first square is looked at here, the
+  // rest are found tick by tick. The wave still running, if any, is revealed at once
+  // first, and a board the raster has not painted square by square, or a flood too
+  // big for a wave, is left for the raster to paint at once
+  void start(Board board, BoardRaster raster) {
+    this.finish();
+    if (!raster.paints(board) || board.floodedCount > this.maxWave) {
+      return;
+    }
+    this.board = board;
+    this.raster = raster;
+    this.flood = board.colorIndexAt(0);
+    this.perTick = Math.max(this.cellsPerTick,
+        (board.floodedCount + FloodAnimator.WAVE_TICKS - 1) / FloodAnimator.WAVE_TICKS);
+    int words = (board.cellCount() + 63) >>> 6;
+    if (this.seen == null || this.seen.length != words) {
+      this.seen = new long[words];
+    }
+    else {
+      Arrays.fill(this.seen, 0);
+    }
+    this.queue.add(0);
+    this.seen[0] |= 1L;
+  }
+
+  // EFFECT: searches on from the squares reached so far, ring by ring out from the first
+  // square, until the wave has the given number of squares, the search is over or the
+  // given deadline (in System.nanoTime) has passed
+  void search(int wanted, long deadline) {
+    // ACC: the queue grows ring by ring out from the first square
+    while (this.wave.size() < wanted && this.searched < this.queue.size()) {
+      int index = this.queue.get(this.searched);
+      this.searched += 1;
+      if (this.raster.painted[index] != this.flood) {
+        this.wave.add(index);
+      }
+      int count = this.board.neighbors(index, this.adjacent);
+      for (int n = 0; n < count; n += 1) {
+        int next = this.adjacent[n];
+        if (this.board.isFlooded(next) && (this.seen[next >>> 6] & (1L << next)) == 0) {
+          this.seen[next >>> 6] |= 1L << next;
+          this.queue.add(next);
+        }
+      }
+      // the clock is only read every so often, it costs more than searching a square
+      if ((this.searched & 63) == 0 && System.nanoTime() > deadline) {
+        break;
+      }
+    }
+  }
+
+  // EFFECT: finds and reveals the next squares of the wave, up to the number per tick
+  // and for no longer than the budget, returning whether the wave was still running
+  boolean step() {
+    if (!this.isRunning()) {
+      return false;
+    }
+    this.ticks += 1;
+    if (this.ticks >= FloodAnimator.WAVE_TICKS) {
+      // the last tick a wave may take shows the rest of it, even if the budget of the
+      // ticks before ran out before their squares did
+      this.finish();
+      return true;
+    }
+    long deadline = System.nanoTime() + this.budgetNanos;
+    this.search(this.revealed + this.perTick, deadline);
+    int end = Math.min(this.wave.size(), this.revealed + this.perTick);
+    while (this.revealed < end) {
+      this.raster.paint(this.board, this.wave.get(this.revealed));
+      this.revealed += 1;
+      // the clock is only read every so often, it costs more than painting a square
+      if ((this.revealed & 63) == 0 && System.nanoTime() > deadline) {
+        break;
+      }
+    }
+    if (!this.isRunning()) {
+      this.raster.draw(this.board);
+    }
+    return true;
+  }
+
+  // EFFECT: reveals the rest of the wave at once, if one is running, by letting the
+  // raster paint every flooded square that changed, and forgets it
+  void finish() {
+    if (this.isRunning()) {
+      this.raster.draw(this.board);
+    }
+    this.wave.clear();
+    this.queue.clear();
+    this.revealed = 0;
+    this.searched = 0;
+    this.ticks = 0;
+  }
+}
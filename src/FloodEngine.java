@@ -0,0 +1,640 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import java.awt.Color;
+
+// Represents a way of spreading the flood across a Board
+interface IFloodEngine {
+  // a board of the given size and shape, dealt with the given number of colors of the
+  // given palette, that this engine can flood
+  Board newBoard(int size, int numColors, ArrayList<Color> palette, ITopology topology);
+
+  // EFFECT: forgets everything known about the previous board and absorbs the squares
+  // already connected to the flooded region of the given one
+  void reset(Board board);
+
+  // EFFECT: floods the given board with the given color, returning the squares absorbed
+  // by this move (the list is reused, so it is only valid until the next flood)
+  IndexList flood(Board board, int colorIndex);
+
+  // has the flood covered the whole given board?
+  boolean isComplete(Board board);
+
+  // EFFECT: takes back a flood of the given board, unflooding the given squares it
+  // absorbed and setting the flooding color back to the given one
+  void unflood(Board board, IndexList squares, int colorIndex);
+}
+
+// Floods a board by keeping the frontier of the flooded region: the unflooded squares
+// adjacent to it, grouped by color. A move only visits the frontier squares of the
+// chosen color and the squares it absorbs, never the rest of the board
+class FrontierFloodEngine implements IFloodEngine {
+  // The unflooded squares next to the flooded region, one list per palette index
+  IndexList[] frontier;
+  // One bit per square, set when the square is in the frontier
+  long[] inFrontier;
+  // The squares absorbed by the last flood
+  IndexList absorbed = new IndexList();
+  // Scratch buffers for the neighbors of a square, and of one of its neighbors
+  int[] adjacent = new int[Board.MAX_DEGREE];
+  int[] around = new int[Board.MAX_DEGREE];
+
+  // a board of the given size and shape, dealt with the given number of colors of the
+  // given palette, that this engine can flood
+  public Board newBoard(int size, int numColors, ArrayList<Color> palette,
+      ITopology topology) {
+    return new Board(size, palette, topology);
+  }
+
+  // EFFECT: rebuilds the frontier from the flooded squares of the given board, then
+  // absorbs everything connected to them in the flooding color. The storage of the
+  // previous board is reused when it is big enough
+  public void reset(Board board) {
+    if (this.frontier == null || this.frontier.length != board.palette.size()) {
+      this.frontier = new IndexList[board.palette.size()];
+      for (int c = 0; c < this.frontier.length; c += 1) {
+        this.frontier[c] = new IndexList();
+      }
+    }
+    for (IndexList list : this.frontier) {
+      list.clear();
+    }
+    int words = (board.cellCount() + 63) >>> 6;
+    if (this.inFrontier == null || this.inFrontier.length != words) {
+      this.inFrontier = new long[words];
+    }
+    else {
+      Arrays.fill(this.inFrontier, 0);
+    }
+    for (int i = board.nextFlooded(0); i >= 0; i = board.nextFlooded(i + 1)) {
+      this.addNeighbors(board, i);
+    }
+    this.flood(board, board.colorIndexAt(0));
+  }
+
+  // EFFECT: floods the given board with the given color, starting from the frontier
+  // squares of that color and spreading until no more squares match
+  public IndexList flood(Board board, int colorIndex) {
+    board.setColorIndex(0, colorIndex);
+    this.absorbed.clear();
+    IndexList matching = this.frontier[colorIndex];
+    for (int k = 0; k < matching.size(); k += 1) {
+      int index = matching.get(k);
+      // squares left behind by an unflood are no longer marked as in the frontier
+      if ((this.inFrontier[index >>> 6] & (1L << index)) != 0) {
+        this.absorb(board, index);
+      }
+    }
+    matching.clear();
+    // ACC: the absorbed list doubles as the queue of squares left to spread from
+    for (int k = 0; k < this.absorbed.size(); k += 1) {
+      int count = board.neighbors(this.absorbed.get(k), this.adjacent);
+      for (int n = 0; n < count; n += 1) {
+        int next = this.adjacent[n];
+        if (!board.isFlooded(next) && board.colorIndexAt(next) == colorIndex) {
+          this.absorb(board, next);
+        }
+        else {
+          this.addToFrontier(board, next);
+        }
+      }
+    }
+    return this.absorbed;
+  }
+
+  // has the flood covered the whole given board?
+  public boolean isComplete(Board board) {
+    return board.allFlooded();
+  }
+
+  // EFFECT: unfloods the given squares, puts those still next to the flooded region
+  // back in the frontier, and takes the squares only they touched out of it. The lists
+  // are not searched: a square taken out keeps its place until the next flood of its
+  // color skips it
+  public void unflood(Board board, IndexList squares, int colorIndex) {
+    for (int k = 0; k < squares.size(); k += 1) {
+      board.clearFlooded(squares.get(k));
+    }
+    board.setColorIndex(0, colorIndex);
+    for (int k = 0; k < squares.size(); k += 1) {
+      int index = squares.get(k);
+      int count = board.neighbors(index, this.adjacent);
+      for (int n = 0; n < count; n += 1) {
+        int next = this.adjacent[n];
+        if ((this.inFrontier[next >>> 6] & (1L << next)) != 0
+            && !this.touchesFlood(board, next)) {
+          this.inFrontier[next >>> 6] &= ~(1L << next);
+        }
+      }
+      if (this.touchesFlood(board, index)) {
+        this.addToFrontier(board, index);
+      }
+    }
+  }
+
+  // is the given square next to a flooded one?
+  boolean touchesFlood(Board board, int index) {
+    int count = board.neighbors(index, this.around);
+    for (int n = 0; n < count; n += 1) {
+      if (board.isFlooded(this.around[n])) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  // EFFECT: floods the given square and queues it up to spread from
+  void absorb(Board board, int index) {
+    board.setFlooded(index);
+    this.inFrontier[index >>> 6] &= ~(1L << index);
+    this.absorbed.add(index);
+  }
+
+  // EFFECT: adds the unflooded neighbors of the given square to the frontier
+  void addNeighbors(Board board, int index) {
+    int count = board.neighbors(index, this.adjacent);
+    for (int n = 0; n < count; n += 1) {
+      this.addToFrontier(board, this.adjacent[n]);
+    }
+  }
+
+  // EFFECT: adds the given square to the frontier, unless it is flooded or already there
+  void addToFrontier(Board board, int index) {
+    if (!board.isFlooded(index) && (this.inFrontier[index >>> 6] & (1L << index)) == 0) {
+      this.inFrontier[index >>> 6] |= 1L << index;
+      this.frontier[board.colorIndexAt(index)].add(index);
+    }
+  }
+}
+
+// Floods a board 64 squares at a time: every palette color gets a bit plane of the
+// squares having it, and the flooded bitset of the board is grown by shifting and
+// masking whole words against the plane of the flooding color until nothing changes
+class BitboardFloodEngine implements IFloodEngine {
+  // One bit plane per palette index, with the bits set for the squares of that color
+  long[][] planes;
+  // The squares that are not in the first row of their column
+  long[] notFirst;
+  // The squares that are not in the last row of their column
+  long[] notLast;
+  // The squares absorbed by the last flood
+  IndexList absorbed = new IndexList();
+  // Every word of the flooded bitset before this one is completely flooded
+  int low;
+  // No word of the flooded bitset after this one has any flooded square
+  int high;
+  // How many words away the squares in the next column can be
+  int span;
+
+  // a board of the given size and shape, dealt with the given number of colors of the
+  // given palette, that this engine can flood
+  public Board newBoard(int size, int numColors, ArrayList<Color> palette,
+      ITopology topology) {
+    return new Board(size, palette, topology);
+  }
+
+  // EFFECT: builds the color planes of the given board, then absorbs everything
+  // connected to the flooded squares in the flooding color. The shifts only follow
+  // the squares of a plain grid, so boards of any other shape are refused
+  public void reset(Board board) {
+    if (!(board.topology instanceof GridTopology)) {
+      throw new IllegalArgumentException(
+          "Cannot flood a " + board.topology.name() + " board with bitboards");
+    }
+    int words = board.flooded.length;
+    if (this.planes == null || this.planes.length != board.palette.size()
+        || this.notFirst.length != words) {
+      this.planes = new long[board.palette.size()][words];
+      this.notFirst = new long[words];
+      this.notLast = new long[words];
+    }
+    else {
+      for (long[] plane : this.planes) {
+        Arrays.fill(plane, 0);
+      }
+      Arrays.fill(this.notFirst, 0);
+      Arrays.fill(this.notLast, 0);
+    }
+    for (int i = 0; i < board.cellCount(); i += 1) {
+      this.planes[board.colors[i]][i >>> 6] |= 1L << i;
+      if (i % board.size != 0) {
+        this.notFirst[i >>> 6] |= 1L << i;
+      }
+      if (i % board.size != board.size - 1) {
+        this.notLast[i >>> 6] |= 1L << i;
+      }
+    }
+    this.low = 0;
+    this.high = 0;
+    this.span = (board.size >>> 6) + 1;
+    for (int w = 0; w < words; w += 1) {
+      if (board.flooded[w] != 0) {
+        this.high = w;
+      }
+    }
+    this.flood(board, board.colorIndexAt(0));
+  }
+
+  // EFFECT: floods the given board with the given color by sweeping over the words of
+  // its flooded bitset, forwards then backwards, until a pair of sweeps changes nothing
+  public IndexList flood(Board board, int colorIndex) {
+    board.setColorIndex(0, colorIndex);
+    this.absorbed.clear();
+    long[] plane = this.planes[colorIndex];
+    boolean changed = true;
+    while (changed) {
+      changed = this.sweepForward(board, plane);
+      changed = this.sweepBackward(board, plane) || changed;
+    }
+    long[] f = board.flooded;
+    while (this.low < f.length - 1 && f[this.low] == -1L) {
+      this.low += 1;
+    }
+    return this.absorbed;
+  }
+
+  // has the flood covered the whole given board?
+  public boolean isComplete(Board board) {
+    return board.allFlooded();
+  }
+
+  // EFFECT: unfloods the given squares, moving the first word that is not completely
+  // flooded back to the earliest of them
+  public void unflood(Board board, IndexList squares, int colorIndex) {
+    for (int k = 0; k < squares.size(); k += 1) {
+      board.clearFlooded(squares.get(k));
+      this.low = Math.min(this.low, squares.get(k) >>> 6);
+    }
+    board.setColorIndex(0, colorIndex);
+  }
+
+  // EFFECT: spreads the flood down and to the right, so that a single sweep follows a
+  // region all the way along those directions, returning whether anything was absorbed
+  boolean sweepForward(Board board, long[] plane) {
+    long[] f = board.flooded;
+    boolean changed = false;
+    // only the words near the flooded region can change
+    for (int w = this.low; w < f.length && w <= this.high + this.span; w += 1) {
+      long carry = 0;
+      if (w > 0) {
+        carry = f[w - 1] >>> 63;
+      }
+      long grown = this.grownForward(plane, f, w, this.bitsAt(f, (w << 6) - board.size),
+          carry);
+      changed = this.absorbWord(board, w, grown) || changed;
+    }
+    return changed;
+  }
+
+  // EFFECT: spreads the flood up and to the left, the mirror image of sweepForward,
+  // returning whether anything was absorbed
+  boolean sweepBackward(Board board, long[] plane) {
+    long[] f = board.flooded;
+    boolean changed = false;
+    for (int w = Math.min(f.length - 1, this.high + this.span); w >= this.low; w -= 1) {
+      long carry = 0;
+      if (w < f.length - 1) {
+        carry = f[w + 1] & 1;
+      }
+      long grown = this.grownBackward(plane, f, w, this.bitsAt(f, (w << 6) + board.size),
+          carry);
+      changed = this.absorbWord(board, w, grown) || changed;
+    }
+    return changed;
+  }
+
+  // word w of the flooded bitset grown down the runs of the plane, from its flooded
+  // squares, the flooded squares of the given word of the column before, and the
+  // carry of the last square of the word before
+  long grownForward(long[] plane, long[] f, int w, long before, long carry) {
+    long allowed = plane[w] | f[w];
+    long seeds = f[w] | (before & allowed);
+    long runs = allowed & this.notFirst[w];
+    long start = ((seeds << 1) | carry) & runs;
+    return seeds | (((runs + start) ^ runs) & runs) | start;
+  }
+
+  // word w of the flooded bitset grown up the runs of the plane, the mirror image of
+  // grownForward with the column after and the first square of the word after
+  long grownBackward(long[] plane, long[] f, int w, long after, long carry) {
+    long allowed = plane[w] | f[w];
+    long seeds = f[w] | (after & allowed);
+    // reverse the words so that moving up becomes moving towards the higher bits
+    long runs = Long.reverse(allowed & this.notLast[w]);
+    long start = ((Long.reverse(seeds) << 1) | carry) & runs;
+    return seeds | Long.reverse((((runs + start) ^ runs) & runs) | start);
+  }
+
+  // the 64 bits of the given bitset starting at the given (possibly negative) bit
+  long bitsAt(long[] bits, int offset) {
+    int w = offset >> 6;
+    int shift = offset & 63;
+    long low = 0;
+    if (w >= 0 && w < bits.length) {
+      low = bits[w];
+    }
+    if (shift == 0) {
+      return low;
+    }
+    long high = 0;
+    if (w + 1 >= 0 && w + 1 < bits.length) {
+      high = bits[w + 1];
+    }
+    return (low >>> shift) | (high << (64 - shift));
+  }
+
+  // EFFECT: floods the squares of the grown word of the flooded bitset, recording the
+  // squares it absorbed, and returns whether there were any
+  boolean absorbWord(Board board, int w, long grown) {
+    long fresh = grown & ~board.flooded[w];
+    if (fresh == 0) {
+      return false;
+    }
+    this.high = Math.max(this.high, w);
+    for (long rest = fresh; rest != 0; rest &= rest - 1) {
+      int index = (w << 6) + Long.numberOfTrailingZeros(rest);
+      board.setFlooded(index);
+      this.absorbed.add(index);
+    }
+    return true;
+  }
+}
+
+// Floods very large boards on every core. The flooded bitset is split into stripes of
+// whole words, at least a column and a chunk long, and every round sweeps the stripes
+// near the flood in parallel fork-join tasks. A stripe only writes its own words and
+// reads the words of its neighbors from a copy frozen at the start of the round, so
+// the squares the flood reaches across a border are picked up by the next round, and
+// the rounds stop with exactly the squares the sequential sweep floods. Boards with
+// fewer squares than the threshold are flooded by the sequential sweep
+class ParallelFloodEngine extends BitboardFloodEngine {
+  // The fewest squares a board must have to be flooded in parallel
+  int minCells;
+  // The fewest words of the flooded bitset a stripe is given
+  int minStripeWords;
+  // The pool the stripes are swept on
+  ForkJoinPool pool;
+  // How many words of the flooded bitset are in each stripe, and how many stripes
+  // there are
+  int stripeWords;
+  int stripeCount;
+  // The flooded bitset as it stood at the start of the current round
+  long[] frozen;
+  // The squares absorbed in every stripe by the current move
+  IndexList[] stripeAbsorbed;
+  // The last word every stripe absorbed squares in
+  int[] stripeHigh;
+  // Whether every stripe absorbed something in the current round
+  boolean[] changed;
+  // The stripes to sweep in the current round and in the next one, and whether each
+  // stripe is already queued for the next one
+  IndexList pending = new IndexList();
+  IndexList next = new IndexList();
+  boolean[] queued;
+  // How many rounds the last flood took, 0 when it was flooded sequentially
+  int rounds;
+
+  // The fewest squares flooded in parallel, and the fewest words in a stripe, unless
+  // others are given
+  static final int PARALLEL_MIN_CELLS = 1 << 18;
+  static final int STRIPE_WORDS = 1 << 10;
+
+  ParallelFloodEngine() {
+    this(ParallelFloodEngine.PARALLEL_MIN_CELLS, ParallelFloodEngine.STRIPE_WORDS,
+        ForkJoinPool.commonPool());
+  }
+
+  ParallelFloodEngine(int minCells, int minStripeWords, ForkJoinPool pool) {
+    this.minCells = minCells;
+    this.minStripeWords = minStripeWords;
+    this.pool = pool;
+  }
+
+  // EFFECT: splits the flooded bitset of the given board into stripes, then builds
+  // the color planes and absorbs everything connected to the flooded squares
+  public void reset(Board board) {
+    int words = board.flooded.length;
+    int chunkWords = 1 << (Board.CHUNK_BITS - 6);
+    // a stripe spans at least a column, so the squares next to it are all in the
+    // stripes on either side, and whole chunks, so no two stripes mark the same chunk
+    int wanted = Math.max(this.minStripeWords, (board.size >>> 6) + 1);
+    this.stripeWords = ((wanted + chunkWords - 1) / chunkWords) * chunkWords;
+    this.stripeCount = ((words - 1) / this.stripeWords) + 1;
+    if (this.frozen == null || this.frozen.length != words
+        || this.changed.length != this.stripeCount) {
+      this.frozen = new long[words];
+      this.stripeAbsorbed = new IndexList[this.stripeCount];
+      for (int s = 0; s < this.stripeCount; s += 1) {
+        this.stripeAbsorbed[s] = new IndexList();
+      }
+      this.stripeHigh = new int[this.stripeCount];
+      this.changed = new boolean[this.stripeCount];
+      this.queued = new boolean[this.stripeCount];
+    }
+    super.reset(board);
+  }
+
+  // EFFECT: floods the given board with the given color, in rounds of parallel sweeps
+  // over the stripes until a round changes nothing, or sequentially on a small board
+  public IndexList flood(Board board, int colorIndex) {
+    if (board.cellCount() < this.minCells || this.stripeCount < 2) {
+      this.rounds = 0;
+      return super.flood(board, colorIndex);
+    }
+    board.setColorIndex(0, colorIndex);
+    this.absorbed.clear();
+    long[] plane = this.planes[colorIndex];
+    long[] f = board.flooded;
+    System.arraycopy(f, 0, this.frozen, 0, f.length);
+    // the first round sweeps the stripes the sequential sweep would
+    this.pending.clear();
+    int last = Math.min(f.length - 1, this.high + this.span);
+    for (int s = this.low / this.stripeWords; s <= last / this.stripeWords; s += 1) {
+      this.pending.add(s);
+    }
+    this.rounds = 0;
+    while (!this.pending.isEmpty()) {
+      this.rounds += 1;
+      if (this.pending.size() == 1) {
+        this.sweepStripe(board, plane, this.pending.get(0));
+      }
+      else {
+        this.pool.invoke(new StripeTask(this, board, plane, 0, this.pending.size()));
+      }
+      this.exchangeBorders(f);
+    }
+    this.gatherAbsorbed(board, colorIndex);
+    while (this.low < f.length - 1 && f[this.low] == -1L) {
+      this.low += 1;
+    }
+    return this.absorbed;
+  }
+
+  // EFFECT: freezes the words of the stripes that changed in the last round and queues
+  // up their neighbors for the next one, whose borders they may have reached
+  void exchangeBorders(long[] f) {
+    this.next.clear();
+    for (int k = 0; k < this.pending.size(); k += 1) {
+      int stripe = this.pending.get(k);
+      if (this.changed[stripe]) {
+        int from = stripe * this.stripeWords;
+        int to = Math.min(f.length, from + this.stripeWords);
+        System.arraycopy(f, from, this.frozen, from, to - from);
+        this.queue(stripe - 1);
+        this.queue(stripe + 1);
+      }
+    }
+    for (int k = 0; k < this.next.size(); k += 1) {
+      this.queued[this.next.get(k)] = false;
+    }
+    IndexList swept = this.pending;
+    this.pending = this.next;
+    this.next = swept;
+  }
+
+  // EFFECT: queues up the given stripe for the next round, if there is such a stripe
+  // and it is not queued already
+  void queue(int stripe) {
+    if (stripe >= 0 && stripe < this.stripeCount && !this.queued[stripe]) {
+      this.queued[stripe] = true;
+      this.next.add(stripe);
+    }
+  }
+
+  // EFFECT: gathers the squares absorbed in every stripe, in order, and counts them
+  // on the board, all of them having had the given color
+  void gatherAbsorbed(Board board, int colorIndex) {
+    for (int s = 0; s < this.stripeCount; s += 1) {
+      IndexList squares = this.stripeAbsorbed[s];
+      for (int k = 0; k < squares.size(); k += 1) {
+        this.absorbed.add(squares.get(k));
+      }
+      if (!squares.isEmpty()) {
+        this.high = Math.max(this.high, this.stripeHigh[s]);
+      }
+      squares.clear();
+    }
+    board.floodedCount += this.absorbed.size();
+    board.remaining[colorIndex] -= this.absorbed.size();
+  }
+
+  // EFFECT: sweeps the given stripe forwards and backwards until it stops changing,
+  // recording whether it absorbed anything. Only the words of the stripe are written,
+  // so the stripes of a round can be swept at the same time
+  void sweepStripe(Board board, long[] plane, int stripe) {
+    long[] f = board.flooded;
+    int from = stripe * this.stripeWords;
+    int to = Math.min(f.length, from + this.stripeWords);
+    boolean any = false;
+    boolean changed = true;
+    while (changed) {
+      changed = false;
+      for (int w = from; w < to; w += 1) {
+        long carry = 0;
+        if (w > 0) {
+          carry = this.wordAt(f, from, to, w - 1) >>> 63;
+        }
+        long grown = this.grownForward(plane, f, w,
+            this.stripeBitsAt(f, from, to, (w << 6) - board.size), carry);
+        changed = this.absorbStripeWord(board, stripe, w, grown) || changed;
+      }
+      for (int w = to - 1; w >= from; w -= 1) {
+        long carry = 0;
+        if (w < f.length - 1) {
+          carry = this.wordAt(f, from, to, w + 1) & 1;
+        }
+        long grown = this.grownBackward(plane, f, w,
+            this.stripeBitsAt(f, from, to, (w << 6) + board.size), carry);
+        changed = this.absorbStripeWord(board, stripe, w, grown) || changed;
+      }
+      any = any || changed;
+    }
+    this.changed[stripe] = any;
+  }
+
+  // word w of the flooded bitset as seen from the stripe of words from (inclusive) to
+  // to (exclusive): its own words as they stand, the others as they were frozen
+  long wordAt(long[] f, int from, int to, int w) {
+    if (w >= from && w < to) {
+      return f[w];
+    }
+    else {
+      return this.frozen[w];
+    }
+  }
+
+  // the 64 bits of the flooded bitset starting at the given (possibly negative) bit,
+  // as seen from the stripe of words from (inclusive) to to (exclusive)
+  long stripeBitsAt(long[] f, int from, int to, int offset) {
+    int w = offset >> 6;
+    int shift = offset & 63;
+    long low = 0;
+    if (w >= 0 && w < f.length) {
+      low = this.wordAt(f, from, to, w);
+    }
+    if (shift == 0) {
+      return low;
+    }
+    long high = 0;
+    if (w + 1 >= 0 && w + 1 < f.length) {
+      high = this.wordAt(f, from, to, w + 1);
+    }
+    return (low >>> shift) | (high << (64 - shift));
+  }
+
+  // EFFECT: floods the squares of the grown word of the flooded bitset, recording the
+  // squares it absorbed in the given stripe, and returns whether there were any. The
+  // counts of the board are left to gatherAbsorbed, since stripes share them
+  boolean absorbStripeWord(Board board, int stripe, int w, long grown) {
+    long fresh = grown & ~board.flooded[w];
+    if (fresh == 0) {
+      return false;
+    }
+    board.flooded[w] |= fresh;
+    board.dirty[(w << 6) >>> Board.CHUNK_BITS] = true;
+    this.stripeHigh[stripe] = Math.max(this.stripeHigh[stripe], w);
+    IndexList squares = this.stripeAbsorbed[stripe];
+    for (long rest = fresh; rest != 0; rest &= rest - 1) {
+      squares.add((w << 6) + Long.numberOfTrailingZeros(rest));
+    }
+    return true;
+  }
+}
+
+// Sweeps a range of the stripes of a round of a ParallelFloodEngine, in parallel halves
+// when there are several
+class StripeTask extends RecursiveAction {
+  // The engine whose stripes this task sweeps
+  ParallelFloodEngine engine;
+  // The board being flooded, and the plane of the flooding color
+  Board board;
+  long[] plane;
+  // The positions in the pending stripes of this task, from first (inclusive) to last
+  // (exclusive)
+  int first;
+  int last;
+
+  StripeTask(ParallelFloodEngine engine, Board board, long[] plane, int first, int last) {
+    this.engine = engine;
+    this.board = board;
+    this.plane = plane;
+    this.first = first;
+    this.last = last;
+  }
+
+  // sweeps the stripes of this task, in parallel halves when there are several
+  protected void compute() {
+    if (this.last - this.first == 1) {
+      this.engine.sweepStripe(this.board, this.plane, this.engine.pending.get(this.first));
+    }
+    else {
+      int middle = this.first + ((this.last - this.first) / 2);
+      StripeTask left = new StripeTask(this.engine, this.board, this.plane, this.first, middle);
+      left.fork();
+      new StripeTask(this.engine, this.board, this.plane, middle, this.last).compute();
+      left.join();
+    }
+  }
+}
@@ -0,0 +1,447 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.IntStream;
+
+import java.awt.Color;
+
+// Represents the rules of a game of FloodIt without any drawing: the board, the moves,
+// the flood and the scoring. A FloodItWorld plays one through the canvas, and programs
+// can play as many as they like in a plain JVM through applyMove
+class FloodGame {
+  // All the cells of the game
+  Board board;
+  // Spreads the flood across the board
+  IFloodEngine engine;
+  // The cells absorbed by the most recent flood
+  IndexList absorbed;
+  // The flooding color the flood has spread as far as it goes with, so flooding with
+  // it again would absorb nothing, or -1 if the flood has not settled
+  int settledColor = -1;
+  // What a flood that cannot absorb anything produces
+  IndexList none = new IndexList();
+  // Size * size will give us the gameboard
+  int size;
+  // The shape of the board: which squares are next to which
+  ITopology topology;
+  // How many steps the users has left
+  int steps;
+  // Total amount of steps to win
+  int maxSteps;
+  // keeps track of the number of colors
+  int numColors;
+  // List of available colors
+  ArrayList<Color> loc = new ArrayList<Color>(
+      Arrays.asList(Color.yellow, Color.blue, Color.green, Color.red, Color.pink, Color.orange));
+  // The seed the current board was dealt from
+  long seed;
+  // The seeds of the boards dealt when restarting are picked from this one, by how
+  // many restarts came before, so the same restart always deals the same board whether
+  // the pool dealt it ahead of time or not
+  long restartSeeds;
+  // How many times this game was restarted onto the next board
+  int restarts;
+  // The fewest steps the current board can be flooded in, as far as the solver could
+  // tell, or -1 until it has been worked out
+  volatile int par = -1;
+  // The search for the par of the current board, null unless one was started
+  CompletableFuture<Solution> parSearch;
+  // How many boards were dealt or put back, so that a par worked out for an earlier
+  // board is never kept
+  int boards;
+  // The hints for the current board, null until the first one is asked for
+  FloodHints hints;
+  // The moves played on the current board, to take back and play again
+  MoveHistory history = new MoveHistory();
+  // The snapshot the board was last put back to, which the moves in the history were
+  // played from, or null if they were played from the board as it was dealt
+  BoardSnapshot restored;
+  // The squares unflooded by the last undo
+  IndexList undone = new IndexList();
+  // Deals the boards of the next restarts in the background, null unless started
+  BoardPool pool;
+
+  // How many cells are colored by one generator, and by one task when dealing in parallel
+  static final int CHUNK = 1 << 16;
+
+  FloodGame(int size, int numColors, IFloodEngine engine) {
+    this(size, numColors, engine, new SplittableRandom().nextLong());
+  }
+
+  // deals the board from the given seed, so the same seed always gives the same game
+  FloodGame(int size, int numColors, IFloodEngine engine, long seed) {
+    this(size, numColors, engine, seed, new GridTopology());
+  }
+
+  // deals a board of the given shape from the given seed
+  FloodGame(int size, int numColors, IFloodEngine engine, long seed, ITopology topology) {
+    this(size, numColors, engine, seed, topology, null);
+  }
+
+  // a board of the given shape with the given colors, which the given seed need not
+  // deal, or dealt from the seed if no colors are given
+  FloodGame(int size, int numColors, IFloodEngine engine, long seed, ITopology topology,
+      byte[] colors) {
+    this.size = size;
+    this.topology = topology;
+    this.numColors = numColors;
+    this.seed = seed;
+    this.restartSeeds = seed;
+    // Generates the max steps from size and numColors
+    this.maxSteps = (size * 2) - 3 + this.numColors;
+    // Building the board the engine floods
+    this.engine = engine;
+    this.board = this.buildBoard(size, colors);
+    // absorb the cells already connected to the first cell
+    this.engine.reset(this.board);
+    this.settledColor = this.board.colorIndexAt(0);
+  }
+
+  // builds the board for this game given the size, the kind the engine floods, with
+  // the given colors, or dealt from its seed if none are given
+  Board buildBoard(int size, byte[] colors) {
+    Board result = this.engine.newBoard(size, this.numColors, this.loc, this.topology);
+    if (colors == null) {
+      this.deal(result, this.seed, true);
+    }
+    else {
+      result.load(colors);
+    }
+    return result;
+  }
+
+  // EFFECT: recolors the given board from the given seed, with only the first cell
+  // flooded, reusing its storage
+  void deal(Board result, long seed, boolean parallel) {
+    result.deal(this, seed, parallel);
+  }
+
+  // EFFECT: fills the given colors from the given seed. Every chunk of cells gets its
+  // own generator, split in order from the seed, so the colors are the same whether the
+  // chunks are colored one after the other or in parallel
+  void dealColors(byte[] colors, long seed, boolean parallel) {
+    SplittableRandom[] generators = this.generators(seed, colors.length);
+    int chunks = generators.length;
+    if (parallel && chunks > 1) {
+      IntStream.range(0, chunks).parallel()
+          .forEach(k -> this.dealChunk(colors, k, generators[k]));
+    }
+    else {
+      for (int k = 0; k < chunks; k += 1) {
+        this.dealChunk(colors, k, generators[k]);
+      }
+    }
+  }
+
+  // the generators of the chunks of a board of the given number of cells, split in
+  // order from the given seed
+  SplittableRandom[] generators(long seed, int cells) {
+    SplittableRandom root = new SplittableRandom(seed);
+    SplittableRandom[] generators = new SplittableRandom[((cells - 1) / FloodGame.CHUNK) + 1];
+    for (int k = 0; k < generators.length; k += 1) {
+      generators[k] = root.split();
+    }
+    return generators;
+  }
+
+  // EFFECT: colors the cells of the given chunk with the given generator
+  void dealChunk(byte[] colors, int chunk, SplittableRandom rand) {
+    int end = Math.min(colors.length, (chunk + 1) * FloodGame.CHUNK);
+    for (int i = chunk * FloodGame.CHUNK; i < end; i += 1) {
+      colors[i] = (byte) this.chooseColor(rand);
+    }
+  }
+
+  // Chooses a random color (as an index into loc) for each cell
+  int chooseColor(SplittableRandom rand) {
+    return rand.nextInt(this.numColors);
+  }
+
+  // EFFECT: takes one step, flooding the board with the given color (as an index into
+  // loc), and returns the cells it absorbed
+  IndexList applyMove(int colorIndex) {
+    int previous = this.board.colorIndexAt(0);
+    this.steps += 1;
+    this.flood(colorIndex);
+    this.history.record(previous, colorIndex, this.absorbed);
+    return this.absorbed;
+  }
+
+  // EFFECT: takes back the last move played, giving back its step, and returns the
+  // squares it unflooded, or null if there is no move to take back
+  IndexList undo() {
+    if (!this.history.canUndo()) {
+      return null;
+    }
+    this.history.current -= 1;
+    int move = this.history.current;
+    this.history.squares(move, this.undone);
+    this.engine.unflood(this.board, this.undone, this.history.previousColor[move]);
+    // the board is back the way the flood left it before the move
+    this.settledColor = this.history.previousColor[move];
+    this.steps -= 1;
+    // the hints are worked out again from the board the next time they are asked for
+    this.hints = null;
+    return this.undone;
+  }
+
+  // EFFECT: plays again the last move taken back, and returns the squares it absorbed,
+  // or null if there is no move to play again
+  IndexList redo() {
+    if (!this.history.canRedo()) {
+      return null;
+    }
+    int move = this.history.current;
+    this.history.current += 1;
+    this.steps += 1;
+    return this.flood(this.history.playedColor[move]);
+  }
+
+  // EFFECT: floods the board with the given color without taking a step, and returns
+  // the cells it absorbed. Flooding again with the color the flood has settled with
+  // absorbs nothing, and is skipped without going through the board
+  IndexList flood(int colorIndex) {
+    if (colorIndex == this.settledColor && this.board.colorIndexAt(0) == colorIndex) {
+      this.absorbed = this.none;
+      return this.absorbed;
+    }
+    this.absorbed = this.engine.flood(this.board, colorIndex);
+    this.settledColor = colorIndex;
+    if (this.hints != null) {
+      this.hints.played(colorIndex);
+    }
+    return this.absorbed;
+  }
+
+  // EFFECT: starts this game over on the board of the next restart, recoloring the
+  // current one in place. The colors come from the pool when it has them ready, and
+  // are otherwise dealt here rather than waiting for it
+  void restart() {
+    DealtBoard ready = null;
+    if (this.pool != null) {
+      ready = this.pool.poll(this.restarts);
+    }
+    if (ready != null) {
+      this.seed = ready.seed;
+      this.board.load(ready.colors);
+      this.pool.recycle(ready);
+    }
+    else {
+      this.seed = this.restartSeed(this.restarts);
+      this.deal(this.board, this.seed, true);
+    }
+    this.restarts += 1;
+    this.startOver();
+  }
+
+  // the seed of the board dealt by the given restart of this game, counting from 0
+  long restartSeed(int restart) {
+    return new SplittableRandom(this.restartSeeds + restart).nextLong();
+  }
+
+  // EFFECT: starts this game over on the board dealt by the given seed, recoloring
+  // the current board in place so that replaying many games does not allocate
+  void restart(long seed) {
+    this.seed = seed;
+    this.deal(this.board, seed, false);
+    this.startOver();
+  }
+
+  // EFFECT: starts this game over on a board of the given colors, which the given seed
+  // need not deal, recoloring the current board in place
+  void restart(long seed, byte[] colors) {
+    this.seed = seed;
+    this.board.load(colors);
+    this.startOver();
+  }
+
+  // EFFECT: forgets the moves played, after the board was dealt again
+  void startOver() {
+    this.forgetPar();
+    this.engine.reset(this.board);
+    this.settledColor = this.board.colorIndexAt(0);
+    this.steps = 0;
+    this.hints = null;
+    this.history.clear();
+    this.restored = null;
+  }
+
+  // EFFECT: starts dealing the boards of the next restarts in the background, keeping
+  // up to the given number of them ready
+  void startPool(int capacity) {
+    if (this.pool == null) {
+      this.pool = new BoardPool(this, capacity, this.restarts);
+    }
+  }
+
+  // EFFECT: stops dealing boards in the background, if it was started, so that the
+  // next restarts deal their boards themselves
+  void stopPool() {
+    if (this.pool != null) {
+      this.pool.stop();
+      this.pool = null;
+    }
+  }
+
+  // EFFECT: takes a snapshot of the board, sharing the unchanged chunks with the last one
+  BoardSnapshot snapshot() {
+    return this.board.snapshot();
+  }
+
+  // EFFECT: puts the board back in the state of the given snapshot, taken from this
+  // game, with the given number of steps played
+  void restore(BoardSnapshot snapshot, int steps) {
+    this.forgetPar();
+    this.board.restore(snapshot);
+    this.engine.reset(this.board);
+    this.settledColor = this.board.colorIndexAt(0);
+    this.steps = steps;
+    this.hints = null;
+    this.history.clear();
+    this.restored = snapshot;
+  }
+
+  // EFFECT: works out the par of the current board on the solver's background thread
+  // within the given budget, then sets it unless this game has moved on to another
+  // board in the meantime. The search started before, if any, is stopped
+  CompletableFuture<Solution> findPar(long budgetNanos, int maxStates) {
+    this.forgetPar();
+    int board = this.boards;
+    int played = this.steps;
+    CompletableFuture<Solution> search = FloodSolver.solveLater(this.board, budgetNanos,
+        maxStates);
+    this.parSearch = search;
+    return search.thenApply(solution -> {
+      this.foundPar(board, played, solution);
+      return solution;
+    });
+  }
+
+  // EFFECT: sets the par from the given solution of the given board, found after the
+  // given number of steps, unless the game has moved on to another board since, no
+  // solution was found in time, or the one found takes more steps than the game allows,
+  // which would rate the player against a par they cannot reach
+  synchronized void foundPar(int board, int played, Solution solution) {
+    if (this.boards == board && solution != null
+        && played + solution.length() <= this.maxSteps) {
+      this.par = played + solution.length();
+    }
+  }
+
+  // EFFECT: forgets the par of the board played so far, stopping the search for it
+  synchronized void forgetPar() {
+    this.boards += 1;
+    this.par = -1;
+    if (this.parSearch != null) {
+      this.parSearch.cancel(false);
+      this.parSearch = null;
+    }
+  }
+
+  // the hints for the board as it stands, worked out from the board the first time and
+  // kept up to date by every flood after that
+  FloodHints hints() {
+    if (this.hints == null) {
+      this.hints = new FloodHints(this.board);
+    }
+    return this.hints;
+  }
+
+  // a hash of the state of this game: its seed, its steps, and the color and flooded
+  // state of every square
+  long stateHash() {
+    long hash = (this.seed * 31) + this.steps;
+    int cells = this.board.cellCount();
+    for (int i = 0; i < cells; i += 1) {
+      hash = (hash * 31) + this.board.colorIndexAt(i);
+    }
+    // the flooded squares go in 64 to a word, the way a board on the heap keeps them
+    long word = 0;
+    for (int i = 0; i < cells; i += 1) {
+      if (this.board.isFlooded(i)) {
+        word |= 1L << i;
+      }
+      if ((i & 63) == 63 || i == cells - 1) {
+        hash = (hash * 31) + word;
+        word = 0;
+      }
+    }
+    return hash;
+  }
+
+  // check if the board has all been flooded
+  boolean allFloodedCheck() {
+    return this.engine.isComplete(this.board);
+  }
+
+  // check if the game has ended, either won or out of steps
+  boolean isOver() {
+    return this.allFloodedCheck() || this.steps > this.maxSteps;
+  }
+
+  // how many cells have been flooded so far
+  int floodedCount() {
+    return this.board.floodedCount;
+  }
+
+  // how many unflooded cells are left with the given color (as an index into loc)
+  int remainingCount(int colorIndex) {
+    return this.board.remaining[colorIndex];
+  }
+
+  // how many colors still have unflooded cells
+  int colorsLeft() {
+    return this.board.colorsLeft();
+  }
+
+  // the fraction of the board that has been flooded so far
+  double progress() {
+    return (double) this.board.floodedCount / this.board.cellCount();
+  }
+
+  // what is this player's level, measured against the par of the board once the
+  // solver has worked it out
+  String playerLevel() {
+    if (this.maxSteps - this.steps <= 0) {
+      return "Noob";
+    }
+    else if (this.par >= 0) {
+      return this.parLevel();
+    }
+    else if (this.maxSteps - this.steps >= this.maxSteps * 0.5) {
+      return "FloodIt Master";
+    }
+    else if (this.maxSteps - this.steps >= this.maxSteps * 0.35) {
+      return "Expert";
+    }
+    else if (this.maxSteps - this.steps >= this.maxSteps * 0.25) {
+      return "Skilled";
+    }
+    else if (this.maxSteps - this.steps >= this.maxSteps * 0.1) {
+      return "Beginner";
+    }
+    else {
+      return "";
+    }
+  }
+
+  // what is this player's level, by how many steps over par they took
+  String parLevel() {
+    if (this.steps <= this.par) {
+      return "FloodIt Master";
+    }
+    else if (this.steps <= this.par + Math.max(1, this.par / 10)) {
+      return "Expert";
+    }
+    else if (this.steps <= this.par + Math.max(2, this.par / 5)) {
+      return "Skilled";
+    }
+    else if (this.steps <= this.par + Math.max(3, this.par / 3)) {
+      return "Beginner";
+    }
+    else {
+      return "";
+    }
+  }
+}
@@ -0,0 +1,265 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+// Saves a game to a small binary file and loads it back. The board the moves were
+// played from is saved as just its seed when it can be dealt again from it, and
+// otherwise as its colors packed two squares to a byte, such as a board put back from a
+// snapshot, which shows the squares flooded before it. A ReplayLogWriter saves the
+// boards of its games the same way. In both cases it is followed by
+// one byte per move played, so loading deals the board and plays the moves again,
+// history and all
+class GameFile {
+  // The first bytes of every saved game, "FLIT", and the version of the format. Games
+  // saved before version 2 have no shape and are all plain grids
+  static final int MAGIC = 0x464C4954;
+  static final byte VERSION = 2;
+  // The flag set when the colors of the board follow the header
+  static final byte PACKED = 1;
+  // The largest board whose squares can be counted in an int, and the most colors a
+  // game can have, one for every color of the palette
+  static final int MAX_SIZE = 46340;
+  static final int MAX_COLORS = 6;
+
+  // EFFECT: saves the given world to the file at the given path
+  static void save(FloodItWorld world, Path path) throws IOException {
+    FloodGame game = world.game;
+    byte[] packed = GameFile.packedColors(game);
+    int moves = game.history.current;
+    int length = 4 + 1 + 4 + 1 + 1 + 1 + 8 + 1 + 4 + 4 + 4 + moves;
+    if (packed != null) {
+      length += packed.length;
+    }
+    ByteBuffer out = ByteBuffer.allocate(length);
+    out.putInt(GameFile.MAGIC);
+    out.put(GameFile.VERSION);
+    out.putInt(game.size);
+    out.put((byte) game.numColors);
+    out.put(GameFile.engineCode(game.engine));
+    out.put(GameFile.topologyCode(game.topology));
+    out.putLong(game.seed);
+    if (packed != null) {
+      out.put(GameFile.PACKED);
+      out.put(packed);
+    }
+    else {
+      out.put((byte) 0);
+    }
+    out.putInt(game.steps);
+    out.putInt(world.secondsElapsed);
+    out.putInt(moves);
+    for (int m = 0; m < moves; m += 1) {
+      out.put(game.history.playedColor[m]);
+    }
+    out.flip();
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE,
+        StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+      while (out.hasRemaining()) {
+        channel.write(out);
+      }
+    }
+  }
+
+  // the colors of the board the moves in the given game's history were played from,
+  // packed two squares to a byte, or null if they are the ones its seed deals
+  static byte[] packedColors(FloodGame game) {
+    byte[] colors = GameFile.startingColors(game);
+    byte[] dealt = new byte[colors.length];
+    game.dealColors(dealt, game.seed, true);
+    if (Arrays.equals(colors, dealt)) {
+      return null;
+    }
+    byte[] packed = new byte[(colors.length + 1) / 2];
+    for (int i = 0; i < colors.length; i += 2) {
+      int high = 0;
+      if (i + 1 < colors.length) {
+        high = colors[i + 1];
+      }
+      packed[i / 2] = (byte) (colors[i] | (high << 4));
+    }
+    return packed;
+  }
+
+  // the colors of the given number of squares packed two to a byte in the given buffer,
+  // read from where it stands, or null if one of them is not one of the given number
+  // of colors
+  static byte[] unpack(ByteBuffer in, int cells, int numColors) {
+    byte[] colors = new byte[cells];
+    for (int i = 0; i < cells; i += 2) {
+      int pair = in.get();
+      if ((pair & 15) >= numColors || ((pair >>> 4) & 15) >= numColors) {
+        return null;
+      }
+      colors[i] = (byte) (pair & 15);
+      if (i + 1 < cells) {
+        colors[i + 1] = (byte) ((pair >>> 4) & 15);
+      }
+    }
+    return colors;
+  }
+
+  // the colors of the board the moves in the given game's history were played from:
+  // the snapshot it was last put back to, showing the squares flooded then in the color
+  // of the flood, or else the board as dealt, before any move changed the color of its
+  // first square
+  static byte[] startingColors(FloodGame game) {
+    if (game.restored != null) {
+      byte[] colors = new byte[game.board.cellCount()];
+      for (int i = 0; i < colors.length; i += 1) {
+        colors[i] = (byte) game.restored.colorIndexAt(i);
+      }
+      return colors;
+    }
+    byte[] colors = game.board.dealtColors();
+    if (game.history.count > 0) {
+      colors[0] = game.history.previousColor[0];
+    }
+    return colors;
+  }
+
+  // the world saved in the file at the given path. The whole file is checked before
+  // the board is made, so a file cut short or written over allocates nothing
+  static FloodItWorld load(Path path) throws IOException {
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      MappedByteBuffer in = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+      byte version = 0;
+      if (in.remaining() >= 5 && in.getInt() == GameFile.MAGIC) {
+        version = in.get();
+      }
+      // the shape came in with version 2
+      int header = 4 + 1 + 1 + 8 + 1;
+      if (version >= 2) {
+        header += 1;
+      }
+      if (version < 1 || version > GameFile.VERSION || in.remaining() < header) {
+        throw GameFile.notSaved(path);
+      }
+      int size = in.getInt();
+      int numColors = in.get();
+      IFloodEngine engine = GameFile.engineFor(in.get());
+      ITopology topology = new GridTopology();
+      if (version >= 2) {
+        topology = GameFile.topologyFor(in.get());
+      }
+      long seed = in.getLong();
+      boolean packed = in.get() == GameFile.PACKED;
+      long colorBytes = 0;
+      if (packed) {
+        colorBytes = (((long) size * size) + 1) / 2;
+      }
+      if (size < 1 || size > GameFile.MAX_SIZE || numColors < 1
+          || numColors > GameFile.MAX_COLORS || in.remaining() < colorBytes + 4 + 4 + 4) {
+        throw GameFile.notSaved(path);
+      }
+      int movesAt = in.position() + (int) colorBytes + 4 + 4 + 4;
+      int moves = in.getInt(movesAt - 4);
+      if (moves < 0 || moves > in.limit() - movesAt) {
+        throw GameFile.notSaved(path);
+      }
+      for (int m = 0; m < moves; m += 1) {
+        int color = in.get(movesAt + m);
+        if (color < 0 || color >= numColors) {
+          throw GameFile.notSaved(path);
+        }
+      }
+      byte[] colors = null;
+      if (packed) {
+        colors = GameFile.unpack(in, size * size, numColors);
+        if (colors == null) {
+          throw GameFile.notSaved(path);
+        }
+      }
+      FloodGame game = new FloodGame(size, numColors, engine, seed, topology, colors);
+      int steps = in.getInt();
+      int seconds = in.getInt();
+      in.position(movesAt);
+      for (int m = 0; m < moves; m += 1) {
+        game.applyMove(in.get());
+      }
+      game.steps = steps;
+      FloodItWorld world = new FloodItWorld(game);
+      world.secondsElapsed = seconds;
+      world.tickTrack = seconds;
+      return world;
+    }
+  }
+
+  // the error for a file at the given path that does not hold a saved game
+  static IllegalArgumentException notSaved(Path path) {
+    return new IllegalArgumentException("Not a saved FloodIt game: " + path);
+  }
+
+  // the code saved for the given engine
+  static byte engineCode(IFloodEngine engine) {
+    if (engine instanceof TiledFloodEngine) {
+      return 4;
+    }
+    else if (engine instanceof ParallelFloodEngine) {
+      return 3;
+    }
+    else if (engine instanceof BitboardFloodEngine) {
+      return 1;
+    }
+    else if (engine instanceof RegionFloodEngine) {
+      return 2;
+    }
+    else {
+      return 0;
+    }
+  }
+
+  // the code saved for the given shape of board
+  static byte topologyCode(ITopology topology) {
+    if (topology instanceof TorusTopology) {
+      return 1;
+    }
+    else if (topology instanceof KingTopology) {
+      return 2;
+    }
+    else if (topology instanceof HexTopology) {
+      return 3;
+    }
+    else {
+      return 0;
+    }
+  }
+
+  // a new shape of board of the kind saved with the given code
+  static ITopology topologyFor(int code) {
+    if (code == 1) {
+      return new TorusTopology();
+    }
+    else if (code == 2) {
+      return new KingTopology();
+    }
+    else if (code == 3) {
+      return new HexTopology();
+    }
+    else {
+      return new GridTopology();
+    }
+  }
+
+  // a new engine of the kind saved with the given code
+  static IFloodEngine engineFor(int code) {
+    if (code == 1) {
+      return new BitboardFloodEngine();
+    }
+    else if (code == 2) {
+      return new RegionFloodEngine();
+    }
+    else if (code == 3) {
+      return new ParallelFloodEngine();
+    }
+    else if (code == 4) {
+      return new TiledFloodEngine();
+    }
+    else {
+      return new FrontierFloodEngine();
+    }
+  }
+}
@@ -0,0 +1,224 @@
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+import javax.management.ObjectName;
+
+import jdk.jfr.Category;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+// Measures how long every phase of a frame takes: ticks, floods, scenes, end checks and
+// clicks, along with the squares flooded and the bytes allocated by each tick. Every
+// measurement goes into a histogram that JMX can read, and into a JFR event when a
+// recording is on. While disabled, a phase costs one read of a volatile flag
+class GameMetrics implements GameMetricsMBean {
+  // Whether the metrics are being recorded
+  volatile boolean enabled;
+  // The latencies of every phase, in nanoseconds
+  LatencyHistogram[] latency = new LatencyHistogram[GameMetrics.PHASES.length];
+  // The squares flooded and the bytes allocated by every tick
+  LatencyHistogram floodedPerTick = new LatencyHistogram();
+  LatencyHistogram allocatedPerTick = new LatencyHistogram();
+  // The flooded squares and allocated bytes when the current tick started
+  int tickFlooded;
+  long tickAllocated;
+  // Whether these metrics have been registered with JMX
+  boolean registered;
+
+  // The phases of a frame
+  static final int TICK = 0;
+  static final int UPDATE_GAME = 1;
+  static final int MAKE_SCENE = 2;
+  static final int WORLD_ENDS = 3;
+  static final int MOUSE_CLICKED = 4;
+  static final String[] PHASES = { "onTick", "updateGame", "makeScene", "worldEnds",
+      "onMouseClicked" };
+  // The name the metrics are registered under with JMX
+  static final String OBJECT_NAME = "floodit:type=GameMetrics";
+
+  // The metrics of every world in this JVM, recorded from the start when the
+  // floodit.metrics system property is true
+  static final GameMetrics INSTANCE = new GameMetrics(Boolean.getBoolean("floodit.metrics"));
+
+  GameMetrics(boolean enabled) {
+    for (int k = 0; k < this.latency.length; k += 1) {
+      this.latency[k] = new LatencyHistogram();
+    }
+    this.setEnabled(enabled);
+  }
+
+  // when a phase starts, in nanoseconds, or 0 if nothing is being recorded
+  long begin() {
+    if (this.enabled) {
+      return System.nanoTime();
+    }
+    else {
+      return 0;
+    }
+  }
+
+  // EFFECT: records the given phase, started at the given time, unless nothing was
+  // being recorded when it started
+  void end(int phase, long started) {
+    if (started != 0) {
+      long elapsed = System.nanoTime() - started;
+      this.latency[phase].record(elapsed);
+      PhaseEvent event = new PhaseEvent();
+      if (event.isEnabled()) {
+        event.phase = GameMetrics.PHASES[phase];
+        event.latency = elapsed;
+        event.commit();
+      }
+    }
+  }
+
+  // when a tick starts, in nanoseconds, or 0 if nothing is being recorded, noting
+  // the given number of flooded squares and the bytes allocated so far
+  long beginTick(int flooded) {
+    if (this.enabled) {
+      this.tickFlooded = flooded;
+      this.tickAllocated = GameMetrics.allocatedBytes();
+      return System.nanoTime();
+    }
+    else {
+      return 0;
+    }
+  }
+
+  // EFFECT: records a tick started at the given time, which left the given number of
+  // squares flooded, unless nothing was being recorded when it started
+  void endTick(long started, int flooded) {
+    if (started != 0) {
+      long elapsed = System.nanoTime() - started;
+      long allocated = GameMetrics.allocatedBytes() - this.tickAllocated;
+      this.latency[GameMetrics.TICK].record(elapsed);
+      this.floodedPerTick.record(flooded - this.tickFlooded);
+      this.allocatedPerTick.record(allocated);
+      TickEvent event = new TickEvent();
+      if (event.isEnabled()) {
+        event.latency = elapsed;
+        event.flooded = flooded - this.tickFlooded;
+        event.allocated = allocated;
+        event.commit();
+      }
+    }
+  }
+
+  // the bytes allocated by this thread so far, or 0 if the JVM cannot tell
+  static long allocatedBytes() {
+    ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+    if (threads instanceof com.sun.management.ThreadMXBean) {
+      return ((com.sun.management.ThreadMXBean) threads)
+          .getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+    else {
+      return 0;
+    }
+  }
+
+  public boolean isEnabled() {
+    return this.enabled;
+  }
+
+  // EFFECT: starts or stops recording, registering with JMX the first time it starts
+  public void setEnabled(boolean enabled) {
+    this.enabled = enabled;
+    if (enabled && !this.registered) {
+      this.registered = true;
+      try {
+        ManagementFactory.getPlatformMBeanServer().registerMBean(this,
+            new ObjectName(GameMetrics.OBJECT_NAME));
+      }
+      catch (Exception e) {
+        // the metrics are still recorded, they just cannot be read over JMX
+      }
+    }
+  }
+
+  public long getTicks() {
+    return this.latency[GameMetrics.TICK].total;
+  }
+
+  public double getTickP50Micros() {
+    return this.latency[GameMetrics.TICK].percentile(0.5) / 1e3;
+  }
+
+  public double getTickP99Micros() {
+    return this.latency[GameMetrics.TICK].percentile(0.99) / 1e3;
+  }
+
+  public double getTickMaxMicros() {
+    return this.latency[GameMetrics.TICK].max / 1e3;
+  }
+
+  public double getUpdateGameP99Micros() {
+    return this.latency[GameMetrics.UPDATE_GAME].percentile(0.99) / 1e3;
+  }
+
+  public double getMakeSceneP99Micros() {
+    return this.latency[GameMetrics.MAKE_SCENE].percentile(0.99) / 1e3;
+  }
+
+  public double getWorldEndsP99Micros() {
+    return this.latency[GameMetrics.WORLD_ENDS].percentile(0.99) / 1e3;
+  }
+
+  public double getMouseClickedP99Micros() {
+    return this.latency[GameMetrics.MOUSE_CLICKED].percentile(0.99) / 1e3;
+  }
+
+  public double getFloodedPerTickMean() {
+    return this.floodedPerTick.mean();
+  }
+
+  public double getAllocatedPerTickMean() {
+    return this.allocatedPerTick.mean();
+  }
+
+  // the latency of the given fraction of the named phase, in microseconds, or -1 if
+  // there is no such phase
+  public double percentileMicros(String phase, double fraction) {
+    for (int k = 0; k < GameMetrics.PHASES.length; k += 1) {
+      if (GameMetrics.PHASES[k].equals(phase)) {
+        return this.latency[k].percentile(fraction) / 1e3;
+      }
+    }
+    return -1;
+  }
+
+  public void reset() {
+    for (LatencyHistogram histogram : this.latency) {
+      histogram.reset();
+    }
+    this.floodedPerTick.reset();
+    this.allocatedPerTick.reset();
+  }
+}
+
+// Recorded by JFR for every measured phase of a frame
+@Name("floodit.Phase")
+@Label("FloodIt Phase")
+@Category("FloodIt")
+class PhaseEvent extends Event {
+  @Label("Phase")
+  String phase;
+  @Label("Latency")
+  @Timespan(Timespan.NANOSECONDS)
+  long latency;
+}
+
+// Recorded by JFR for every measured tick
+@Name("floodit.Tick")
+@Label("FloodIt Tick")
+@Category("FloodIt")
+class TickEvent extends Event {
+  @Label("Latency")
+  @Timespan(Timespan.NANOSECONDS)
+  long latency;
+  @Label("Squares Flooded")
+  int flooded;
+  @Label("Bytes Allocated")
+  long allocated;
+}
@@ -0,0 +1,39 @@
+// The management interface of the game metrics, as seen through JMX. Latencies are in
+// microseconds, and every percentile is one of the phases of a frame
+public interface GameMetricsMBean {
+  // whether the metrics are being recorded
+  boolean isEnabled();
+
+  // EFFECT: starts or stops recording the metrics
+  void setEnabled(boolean enabled);
+
+  // how many ticks have been recorded
+  long getTicks();
+
+  // the 50th, 99th and largest tick latencies
+  double getTickP50Micros();
+
+  double getTickP99Micros();
+
+  double getTickMaxMicros();
+
+  // the 99th percentile latencies of the other phases
+  double getUpdateGameP99Micros();
+
+  double getMakeSceneP99Micros();
+
+  double getWorldEndsP99Micros();
+
+  double getMouseClickedP99Micros();
+
+  // the average number of squares flooded and of bytes allocated per tick
+  double getFloodedPerTickMean();
+
+  double getAllocatedPerTickMean();
+
+  // the latency of the given fraction of the named phase, in microseconds
+  double percentileMicros(String phase, double fraction);
+
+  // EFFECT: forgets everything recorded so far
+  void reset();
+}
@@ -0,0 +1,459 @@
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Represents one game hosted by a GameServer, along with how fast it is being played.
+// Every request of a session is handled under its lock, so a client may send requests
+// for it from several connections
+class GameSession {
+  // The number the session is known by
+  long id;
+  // The game being played
+  FloodGame game;
+  // When the session was started and last used, in nanoseconds
+  long created;
+  volatile long lastUsed;
+  // How many moves were played
+  long moves;
+  // The latencies of the most recent moves, in nanoseconds, oldest overwritten first
+  int[] recent = new int[GameSession.RECENT];
+
+  // How many of the latest move latencies a session keeps
+  static final int RECENT = 256;
+
+  GameSession(long id, FloodGame game, long now) {
+    this.id = id;
+    this.game = game;
+    this.created = now;
+    this.lastUsed = now;
+  }
+
+  // EFFECT: plays the given color, unless the game is over, recording how long it took
+  // in this session and in the given histogram. Produces the reply to the client
+  synchronized String move(int colorIndex, LatencyHistogram all) {
+    if (this.game.isOver()) {
+      return "ERR game over";
+    }
+    long started = System.nanoTime();
+    this.game.applyMove(colorIndex);
+    long elapsed = System.nanoTime() - started;
+    this.recent[(int) (this.moves % GameSession.RECENT)] = (int) Math.min(elapsed,
+        Integer.MAX_VALUE);
+    this.moves += 1;
+    synchronized (all) {
+      all.record(elapsed);
+    }
+    this.lastUsed = started + elapsed;
+    return "OK " + this.game.steps + " " + this.game.floodedCount() + " "
+        + this.game.board.colorIndexAt(0) + " " + this.state();
+  }
+
+  // EFFECT: starts the game over on a new board. Produces the reply to the client
+  synchronized String restart(long now) {
+    this.game.restart();
+    this.lastUsed = now;
+    return "OK " + this.game.seed + " " + this.game.board.colorIndexAt(0);
+  }
+
+  // whether the game is being played, won or lost
+  String state() {
+    if (this.game.allFloodedCheck()) {
+      return "WON";
+    }
+    else if (this.game.isOver()) {
+      return "LOST";
+    }
+    else {
+      return "PLAYING";
+    }
+  }
+
+  // how many moves a second were played since the session started, as of the given time
+  synchronized double movesPerSecond(long now) {
+    return this.moves / Math.max(1e-9, (now - this.created) / 1e9);
+  }
+
+  // the latency, in nanoseconds, that the given fraction of the most recent moves
+  // were played within, or 0 if none were played
+  synchronized long recentPercentile(double fraction) {
+    int count = (int) Math.min(this.moves, GameSession.RECENT);
+    if (count == 0) {
+      return 0;
+    }
+    int[] sorted = Arrays.copyOf(this.recent, count);
+    Arrays.sort(sorted);
+    return sorted[Math.max(0, (int) Math.ceil(fraction * count) - 1)];
+  }
+
+  // a one line summary of this session, as of the given time
+  synchronized String stats(long now) {
+    return String.format("OK id=%d moves=%d movesPerSec=%.1f p99Micros=%.1f state=%s",
+        this.id, this.moves, this.movesPerSecond(now), this.recentPercentile(0.99) / 1e3,
+        this.state());
+  }
+}
+
+// Hosts many games at once for clients on this machine, over a line based protocol on
+// a local TCP port. Every connection is served on its own thread, a virtual one when
+// the JVM has them, and the sessions are kept in memory until they have been idle for
+// too long. The requests, one per line, each answered by one line starting with OK or
+// ERR, are:
+//   NEW size colors [seed]  starts a session: OK id maxSteps floodColor
+//   MOVE id color           plays a move: OK steps flooded floodColor PLAYING|WON|LOST
+//   RESTART id              deals a new board: OK seed floodColor
+//   STATS [id]              the statistics of a session, or of the whole server
+//   CLOSE id                ends a session
+//   QUIT                    closes the connection
+class GameServer {
+  // The socket the connections come in on
+  ServerSocket socket;
+  // Runs the thread of every connection
+  ExecutorService connections;
+  // Evicts the idle sessions every so often
+  ScheduledExecutorService evictor;
+  // The sessions being played, by their ids
+  ConcurrentHashMap<Long, GameSession> sessions = new ConcurrentHashMap<Long, GameSession>();
+  // The id of the next session
+  AtomicLong nextId = new AtomicLong(1);
+  // How long, in nanoseconds, a session may go unused before it is evicted
+  long idleNanos;
+  // The latencies of every move played on this server, in nanoseconds
+  LatencyHistogram latency = new LatencyHistogram();
+  // When this server started, and how many sessions were evicted or closed since
+  long started;
+  AtomicLong ended = new AtomicLong();
+
+  // The largest board a session can be started with
+  static final int MAX_SIZE = 256;
+
+  // listens on the given port of the loopback address (any free one if 0), evicting the
+  // sessions idle for the given number of nanoseconds
+  GameServer(int port, long idleNanos) throws IOException {
+    this.socket = new ServerSocket(port, 1024, InetAddress.getLoopbackAddress());
+    this.idleNanos = idleNanos;
+    this.started = System.nanoTime();
+    this.connections = GameServer.connectionExecutor();
+    this.evictor = Executors.newSingleThreadScheduledExecutor(task -> {
+      Thread thread = new Thread(task, "floodit-evictor");
+      thread.setDaemon(true);
+      return thread;
+    });
+    long period = Math.max(1, idleNanos / 4);
+    this.evictor.scheduleAtFixedRate(() -> this.evictIdle(System.nanoTime()), period, period,
+        TimeUnit.NANOSECONDS);
+    Thread acceptor = new Thread(() -> this.accept(), "floodit-acceptor");
+    acceptor.setDaemon(true);
+    acceptor.start();
+  }
+
+  // runs a thread per task: a virtual thread when the JVM has them, and otherwise a
+  // platform thread from a pool that grows with the connections
+  static ExecutorService connectionExecutor() {
+    try {
+      return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor")
+          .invoke(null);
+    }
+    catch (ReflectiveOperationException e) {
+      return Executors.newCachedThreadPool(task -> {
+        Thread thread = new Thread(task, "floodit-connection");
+        thread.setDaemon(true);
+        return thread;
+      });
+    }
+  }
+
+  // the port this server listens on
+  int port() {
+    return this.socket.getLocalPort();
+  }
+
+  // EFFECT: hands every connection that comes in to a thread of its own, until the
+  // socket is closed
+  void accept() {
+    try {
+      while (true) {
+        Socket client = this.socket.accept();
+        this.connections.execute(() -> this.serve(client));
+      }
+    }
+    catch (IOException e) {
+      // the server was stopped
+    }
+  }
+
+  // EFFECT: answers the requests of the given connection until it asks to quit or
+  // goes away
+  void serve(Socket client) {
+    try (Socket connection = client;
+        BufferedReader in = new BufferedReader(
+            new InputStreamReader(connection.getInputStream(), StandardCharsets.US_ASCII));
+        Writer out = new BufferedWriter(
+            new OutputStreamWriter(connection.getOutputStream(), StandardCharsets.US_ASCII))) {
+      connection.setTcpNoDelay(true);
+      String line = in.readLine();
+      while (line != null && !line.trim().equals("QUIT")) {
+        out.write(this.handle(line));
+        out.write('\n');
+        out.flush();
+        line = in.readLine();
+      }
+    }
+    catch (IOException e) {
+      // the client went away
+    }
+  }
+
+  // EFFECT: carries out the given request, producing its reply
+  String handle(String request) {
+    String[] words = request.trim().split("\\s+");
+    long now = System.nanoTime();
+    try {
+      if (words[0].equals("NEW") && (words.length == 3 || words.length == 4)) {
+        return this.open(Integer.parseInt(words[1]), Integer.parseInt(words[2]), words, now);
+      }
+      else if (words[0].equals("STATS") && words.length == 1) {
+        return this.stats(now);
+      }
+      else if (words.length < 2) {
+        return "ERR unknown request: " + request;
+      }
+      GameSession session = this.sessions.get(Long.parseLong(words[1]));
+      if (session == null) {
+        return "ERR no session " + words[1];
+      }
+      else if (words[0].equals("MOVE") && words.length == 3) {
+        int color = Integer.parseInt(words[2]);
+        if (color < 0 || color >= session.game.numColors) {
+          return "ERR no color " + color;
+        }
+        return session.move(color, this.latency);
+      }
+      else if (words[0].equals("RESTART") && words.length == 2) {
+        return session.restart(now);
+      }
+      else if (words[0].equals("STATS") && words.length == 2) {
+        return session.stats(now);
+      }
+      else if (words[0].equals("CLOSE") && words.length == 2) {
+        this.end(session);
+        return "OK";
+      }
+      else {
+        return "ERR unknown request: " + request;
+      }
+    }
+    catch (NumberFormatException e) {
+      return "ERR not a number in: " + request;
+    }
+  }
+
+  // EFFECT: starts a session with a board of the given size and number of colors,
+  // dealt from the seed in the given request if it has one, producing the reply
+  String open(int size, int numColors, String[] words, long now) {
+    if (size < 1 || size > GameServer.MAX_SIZE || numColors < 1 || numColors > 6) {
+      return "ERR no board of size " + size + " with " + numColors + " colors";
+    }
+    FloodGame game;
+    if (words.length == 4) {
+      game = new FloodGame(size, numColors, new FrontierFloodEngine(), Long.parseLong(words[3]));
+    }
+    else {
+      game = new FloodGame(size, numColors, new FrontierFloodEngine());
+    }
+    GameSession session = new GameSession(this.nextId.getAndIncrement(), game, now);
+    this.sessions.put(session.id, session);
+    return "OK " + session.id + " " + game.maxSteps + " " + game.board.colorIndexAt(0);
+  }
+
+  // EFFECT: ends the given session
+  void end(GameSession session) {
+    if (this.sessions.remove(session.id, session)) {
+      this.ended.incrementAndGet();
+    }
+  }
+
+  // EFFECT: ends every session that has not been used since the idle time before the
+  // given time
+  void evictIdle(long now) {
+    for (GameSession session : this.sessions.values()) {
+      if (now - session.lastUsed > this.idleNanos) {
+        this.end(session);
+      }
+    }
+  }
+
+  // a one line summary of every move played on this server, as of the given time
+  String stats(long now) {
+    long moves;
+    long p99;
+    double mean;
+    synchronized (this.latency) {
+      moves = this.latency.total;
+      p99 = this.latency.percentile(0.99);
+      mean = this.latency.mean();
+    }
+    return String.format(
+        "OK sessions=%d ended=%d moves=%d movesPerSec=%.1f meanMicros=%.1f p99Micros=%.1f",
+        this.sessions.size(), this.ended.get(), moves,
+        moves / Math.max(1e-9, (now - this.started) / 1e9), mean / 1e3, p99 / 1e3);
+  }
+
+  // EFFECT: stops taking connections and evicting sessions
+  void stop() {
+    try {
+      this.socket.close();
+    }
+    catch (IOException e) {
+      // already closed
+    }
+    this.evictor.shutdownNow();
+    this.connections.shutdownNow();
+  }
+
+  // serves games on the given port (7777 if not given), evicting the sessions idle for
+  // the given number of seconds (300 if not given)
+  public static void main(String[] args) throws IOException {
+    int port = 7777;
+    long idleSeconds = 300;
+    if (args.length > 0) {
+      port = Integer.parseInt(args[0]);
+    }
+    if (args.length > 1) {
+      idleSeconds = Long.parseLong(args[1]);
+    }
+    GameServer server = new GameServer(port, TimeUnit.SECONDS.toNanos(idleSeconds));
+    System.out.println("serving FloodIt on localhost:" + server.port());
+    while (true) {
+      try {
+        Thread.sleep(10000);
+      }
+      catch (InterruptedException e) {
+        break;
+      }
+      System.out.println(server.stats(System.nanoTime()));
+    }
+    server.stop();
+  }
+}
+
+// Plays games against a GameServer from many connections at once, each playing its own
+// session, and times every request from the client's side
+class LoadGenerator {
+  // The port of the server on this machine
+  int port;
+  // How many connections play at once, and how many moves each one plays
+  int clients;
+  int movesPerClient;
+  // The boards the sessions are started with
+  int size;
+  int numColors;
+  // The round trip of every move, in nanoseconds
+  LatencyHistogram latency = new LatencyHistogram();
+  // How many connections failed
+  AtomicLong failures = new AtomicLong();
+
+  LoadGenerator(int port, int clients, int movesPerClient, int size, int numColors) {
+    this.port = port;
+    this.clients = clients;
+    this.movesPerClient = movesPerClient;
+    this.size = size;
+    this.numColors = numColors;
+  }
+
+  // EFFECT: plays every client to the end, each on its own thread, and returns how
+  // long that took in nanoseconds
+  long run() throws InterruptedException {
+    long start = System.nanoTime();
+    ExecutorService threads = GameServer.connectionExecutor();
+    for (int k = 0; k < this.clients; k += 1) {
+      long seed = k;
+      threads.execute(() -> this.play(seed));
+    }
+    threads.shutdown();
+    threads.awaitTermination(1, TimeUnit.HOURS);
+    return System.nanoTime() - start;
+  }
+
+  // EFFECT: plays the moves of one client on a session dealt from the given seed,
+  // always playing the color after the flooding one and restarting whenever the game
+  // ends
+  void play(long seed) {
+    try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), this.port);
+        BufferedReader in = new BufferedReader(
+            new InputStreamReader(socket.getInputStream(), StandardCharsets.US_ASCII));
+        Writer out = new BufferedWriter(
+            new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.US_ASCII))) {
+      socket.setTcpNoDelay(true);
+      String[] opened = LoadGenerator.request(in, out,
+          "NEW " + this.size + " " + this.numColors + " " + seed);
+      String id = opened[1];
+      int flood = Integer.parseInt(opened[3]);
+      for (int k = 0; k < this.movesPerClient; k += 1) {
+        long started = System.nanoTime();
+        String[] reply = LoadGenerator.request(in, out,
+            "MOVE " + id + " " + ((flood + 1) % this.numColors));
+        long elapsed = System.nanoTime() - started;
+        synchronized (this.latency) {
+          this.latency.record(elapsed);
+        }
+        flood = Integer.parseInt(reply[3]);
+        if (!reply[4].equals("PLAYING")) {
+          flood = Integer.parseInt(LoadGenerator.request(in, out, "RESTART " + id)[2]);
+        }
+      }
+      LoadGenerator.request(in, out, "CLOSE " + id);
+      out.write("QUIT\n");
+      out.flush();
+    }
+    catch (IOException | RuntimeException e) {
+      this.failures.incrementAndGet();
+    }
+  }
+
+  // EFFECT: sends the given request, producing the words of its reply
+  static String[] request(BufferedReader in, Writer out, String request) throws IOException {
+    out.write(request);
+    out.write('\n');
+    out.flush();
+    String reply = in.readLine();
+    if (reply == null || !reply.startsWith("OK")) {
+      throw new IOException("request " + request + " failed: " + reply);
+    }
+    return reply.split(" ");
+  }
+
+  // starts a server on a free port and plays against it from the given number of
+  // clients (1000 if not given), each playing the given number of moves (200 if not
+  // given) on a board of the given size (14 if not given) and number of colors (6 if
+  // not given), then prints what the clients and the server measured
+  public static void main(String[] args) throws IOException, InterruptedException {
+    int[] settings = { 1000, 200, 14, 6 };
+    for (int k = 0; k < args.length && k < settings.length; k += 1) {
+      settings[k] = Integer.parseInt(args[k]);
+    }
+    GameServer server = new GameServer(0, TimeUnit.MINUTES.toNanos(5));
+    LoadGenerator load = new LoadGenerator(server.port(), settings[0], settings[1],
+        settings[2], settings[3]);
+    long elapsed = load.run();
+    System.out.println(String.format(
+        "%d clients, %d failed, %.0f moves/sec, round trip p50 %.1f us, p99 %.1f us",
+        load.clients, load.failures.get(), load.latency.total / (elapsed / 1e9),
+        load.latency.percentile(0.5) / 1e3, load.latency.percentile(0.99) / 1e3));
+    System.out.println("server: " + server.stats(System.nanoTime()));
+    server.stop();
+  }
+}
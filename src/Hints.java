@@ -0,0 +1,94 @@
+// Answers "which color should I play next?" for a game in progress. It keeps the
+// flooded regions and their boundary as a SolverState, and for every color how many
+// squares playing it next would absorb, updating both from the regions each move
+// absorbs so that a hint is a scan over the colors rather than a flood of the board
+class FloodHints {
+  // Plays moves over the regions of the board
+  FloodSolver solver;
+  // The flooded regions and their boundary after the moves played so far
+  SolverState state;
+  // How many squares each color (as an index into loc) would absorb if played next
+  int[] gains;
+
+  FloodHints(Board board) {
+    this.solver = new FloodSolver(board);
+    this.state = this.solver.start();
+    this.gains = new int[this.solver.numColors];
+    for (int w = 0; w < this.state.boundary.length; w += 1) {
+      this.addGains(this.state.boundary[w], w);
+    }
+  }
+
+  // EFFECT: updates the flooded regions and the gains after the given color was played
+  void played(int colorIndex) {
+    SolverState next = this.solver.play(this.state, colorIndex);
+    if (next != null) {
+      this.gains[colorIndex] = 0;
+      for (int w = 0; w < next.boundary.length; w += 1) {
+        this.addGains(next.boundary[w] & ~this.state.boundary[w], w);
+      }
+      this.state = next;
+    }
+  }
+
+  // EFFECT: adds the sizes of the given word of boundary regions to the gains of their
+  // colors
+  void addGains(long regions, int word) {
+    for (long rest = regions; rest != 0; rest &= rest - 1) {
+      int region = (word << 6) + Long.numberOfTrailingZeros(rest);
+      this.gains[this.solver.graph.color[region]] += this.solver.graph.size[region];
+    }
+  }
+
+  // how many squares the given color would absorb if played next
+  int gain(int colorIndex) {
+    return this.gains[colorIndex];
+  }
+
+  // the color that absorbs the most squares on the next move, or -1 once the board
+  // is flooded
+  int bestMove() {
+    int best = -1;
+    for (int c = 0; c < this.gains.length; c += 1) {
+      if (this.gains[c] > 0 && (best == -1 || this.gains[c] > this.gains[best])) {
+        best = c;
+      }
+    }
+    return best;
+  }
+
+  // the color to play next so that the most squares are flooded after the given
+  // number of moves, or -1 once the board is flooded. Every line of play works on the
+  // region bitsets, so no board is ever copied
+  int bestMove(int depth) {
+    int best = -1;
+    int bestCells = 0;
+    for (int c = 0; c < this.gains.length; c += 1) {
+      SolverState next = this.solver.play(this.state, c);
+      if (next != null) {
+        int cells = this.mostCells(next, depth - 1);
+        if (cells > bestCells) {
+          best = c;
+          bestCells = cells;
+        }
+      }
+    }
+    return best;
+  }
+
+  // the most squares that can be flooded from the given state within the given
+  // number of moves
+  int mostCells(SolverState state, int depth) {
+    if (depth <= 0 || this.solver.isComplete(state)) {
+      return state.cells;
+    }
+    int result = state.cells;
+    for (int c = 0; c < this.gains.length; c += 1) {
+      SolverState next = this.solver.play(state, c);
+      if (next != null) {
+        result = Math.max(result, this.mostCells(next, depth - 1));
+      }
+    }
+    return result;
+  }
+}
@@ -0,0 +1,238 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import javalib.worldimages.*;
+
+// Records the clicks, keys and ticks a FloodItWorld gets, along with how the world
+// was started and a hash of where it ended up. Replaying the log feeds the same input
+// to a new world as fast as it can, without a canvas, and the hash tells whether it
+// ended up in the same place, so a session can be played again to find a bug or to
+// time the whole path from input to drawing
+class InputLog {
+  // How the recorded world was started
+  int size;
+  int numColors;
+  byte engine;
+  byte topology;
+  long seed;
+  // The kind of every event, and its position for clicks or its key for key events
+  byte[] kinds = new byte[64];
+  int[] xs = new int[64];
+  int[] ys = new int[64];
+  // The keys pressed, in order
+  ArrayList<String> keys = new ArrayList<String>();
+  // How many events have been recorded
+  int count;
+  // The hash of the state of the world when the recording finished
+  long finalHash;
+
+  // The kinds of events
+  static final byte CLICK = 0;
+  static final byte KEY = 1;
+  static final byte TICK = 2;
+  // The first bytes of every saved log, "FLIN", and the version of the format
+  static final int MAGIC = 0x464C494E;
+  static final byte VERSION = 2;
+
+  InputLog(int size, int numColors, byte engine, byte topology, long seed) {
+    this.size = size;
+    this.numColors = numColors;
+    this.engine = engine;
+    this.topology = topology;
+    this.seed = seed;
+  }
+
+  // EFFECT: starts recording the input of the given world, which must not have been
+  // played yet
+  static InputLog record(FloodItWorld world) {
+    InputLog log = new InputLog(world.size, world.game.numColors,
+        GameFile.engineCode(world.game.engine), GameFile.topologyCode(world.game.topology),
+        world.game.seed);
+    world.input = log;
+    return log;
+  }
+
+  // EFFECT: stops recording the given world, remembering the state it ended in
+  void finish(FloodItWorld world) {
+    world.input = null;
+    this.finalHash = InputLog.stateHash(world);
+  }
+
+  // a hash of the state of the given world
+  static long stateHash(FloodItWorld world) {
+    return (world.game.stateHash() * 31) + world.secondsElapsed;
+  }
+
+  // EFFECT: records a click at the given position
+  void click(Posn posn) {
+    this.add(InputLog.CLICK, posn.x, posn.y);
+  }
+
+  // EFFECT: records the given key
+  void key(String key) {
+    this.keys.add(key);
+    this.add(InputLog.KEY, this.keys.size() - 1, 0);
+  }
+
+  // EFFECT: records a tick
+  void tick() {
+    this.add(InputLog.TICK, 0, 0);
+  }
+
+  // EFFECT: records an event of the given kind with the given data
+  void add(byte kind, int x, int y) {
+    if (this.count == this.kinds.length) {
+      this.kinds = Arrays.copyOf(this.kinds, this.count * 2);
+      this.xs = Arrays.copyOf(this.xs, this.count * 2);
+      this.ys = Arrays.copyOf(this.ys, this.count * 2);
+    }
+    this.kinds[this.count] = kind;
+    this.xs[this.count] = x;
+    this.ys[this.count] = y;
+    this.count += 1;
+  }
+
+  // a new world started the way the recorded one was, without searching for par or
+  // dealing boards in the background, neither of which changes where it ends up
+  FloodItWorld start() {
+    return new FloodItWorld(new FloodGame(this.size, this.numColors,
+        GameFile.engineFor(this.engine), this.seed, GameFile.topologyFor(this.topology)),
+        false);
+  }
+
+  // feeds every event to a new world, drawing the scene after each one if asked, then
+  // produces the world
+  FloodItWorld replay(boolean draw) {
+    FloodItWorld world = this.start();
+    for (int k = 0; k < this.count; k += 1) {
+      if (this.kinds[k] == InputLog.CLICK) {
+        world.onMouseClicked(new Posn(this.xs[k], this.ys[k]));
+      }
+      else if (this.kinds[k] == InputLog.KEY) {
+        world.onKeyEvent(this.keys.get(this.xs[k]));
+      }
+      else {
+        world.onTick();
+      }
+      if (draw) {
+        world.makeScene();
+      }
+    }
+    return world;
+  }
+
+  // does replaying this log end in the state the recorded world ended in?
+  boolean verify() {
+    return InputLog.stateHash(this.replay(false)) == this.finalHash;
+  }
+
+  // EFFECT: saves this log to the file at the given path
+  void save(Path path) throws IOException {
+    int length = 4 + 1 + 4 + 1 + 1 + 1 + 8 + 8 + 4;
+    for (int k = 0; k < this.count; k += 1) {
+      length += 1;
+      if (this.kinds[k] == InputLog.CLICK) {
+        length += 8;
+      }
+      else if (this.kinds[k] == InputLog.KEY) {
+        length += 2 + this.keys.get(this.xs[k]).getBytes(StandardCharsets.UTF_8).length;
+      }
+    }
+    ByteBuffer out = ByteBuffer.allocate(length);
+    out.putInt(InputLog.MAGIC);
+    out.put(InputLog.VERSION);
+    out.putInt(this.size);
+    out.put((byte) this.numColors);
+    out.put(this.engine);
+    out.put(this.topology);
+    out.putLong(this.seed);
+    out.putLong(this.finalHash);
+    out.putInt(this.count);
+    for (int k = 0; k < this.count; k += 1) {
+      out.put(this.kinds[k]);
+      if (this.kinds[k] == InputLog.CLICK) {
+        out.putInt(this.xs[k]);
+        out.putInt(this.ys[k]);
+      }
+      else if (this.kinds[k] == InputLog.KEY) {
+        byte[] key = this.keys.get(this.xs[k]).getBytes(StandardCharsets.UTF_8);
+        out.putShort((short) key.length);
+        out.put(key);
+      }
+    }
+    out.flip();
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE,
+        StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+      while (out.hasRemaining()) {
+        channel.write(out);
+      }
+    }
+  }
+
+  // the log saved in the file at the given path
+  static InputLog load(Path path) throws IOException {
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      MappedByteBuffer in = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+      byte version = 0;
+      if (in.remaining() >= 5 && in.getInt() == InputLog.MAGIC) {
+        version = in.get();
+      }
+      if (version < 1 || version > InputLog.VERSION) {
+        throw new IllegalArgumentException("Not a FloodIt input log: " + path);
+      }
+      int size = in.getInt();
+      int numColors = in.get();
+      byte engine = in.get();
+      // logs before version 2 were all of plain grids
+      byte topology = 0;
+      if (version >= 2) {
+        topology = in.get();
+      }
+      InputLog log = new InputLog(size, numColors, engine, topology, in.getLong());
+      log.finalHash = in.getLong();
+      int events = in.getInt();
+      for (int k = 0; k < events; k += 1) {
+        byte kind = in.get();
+        if (kind == InputLog.CLICK) {
+          log.add(kind, in.getInt(), in.getInt());
+        }
+        else if (kind == InputLog.KEY) {
+          byte[] key = new byte[in.getShort()];
+          in.get(key);
+          log.key(new String(key, StandardCharsets.UTF_8));
+        }
+        else {
+          log.tick();
+        }
+      }
+      return log;
+    }
+  }
+
+  // replays the log saved at the given path the given number of times (once if not
+  // given), drawing every frame, and prints how fast the events went through and
+  // whether every replay ended where the recording did
+  public static void main(String[] args) throws IOException {
+    InputLog log = InputLog.load(Paths.get(args[0]));
+    int times = 1;
+    if (args.length > 1) {
+      times = Integer.parseInt(args[1]);
+    }
+    boolean same = true;
+    long start = System.nanoTime();
+    for (int k = 0; k < times; k += 1) {
+      same = InputLog.stateHash(log.replay(true)) == log.finalHash && same;
+    }
+    double seconds = (System.nanoTime() - start) / 1e9;
+    System.out.println(String.format("%d events x %d replays, %.0f events/sec, %s", log.count,
+        times, (log.count * (double) times) / seconds, same ? "same state" : "STATE DIFFERS"));
+  }
+}
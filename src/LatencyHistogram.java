@@ -0,0 +1,67 @@
+import java.util.Arrays;
+
+// Counts recorded values in buckets of bounded relative width: values below 128 get a
+// bucket each, and every power of two above that is split into 64 buckets, the way
+// HdrHistogram does. Recording is an index computation and an increment, and a
+// percentile is the top of its bucket, never below the recorded value and over it by
+// less than 1/64 of it, about 1.6%
+class LatencyHistogram {
+  // How many values fell in every bucket
+  long[] counts = new long[LatencyHistogram.BUCKETS];
+  // How many values were recorded, their sum and the largest of them
+  long total;
+  long sum;
+  long max;
+
+  // The largest power of two the buckets reach; bigger values go in the last bucket
+  static final int MAX_EXPONENT = 40;
+  static final int BUCKETS = 64 * (LatencyHistogram.MAX_EXPONENT - 5);
+
+  // the bucket the given value goes in
+  static int indexOf(long value) {
+    long clamped = Math.min(Math.max(value, 0), (1L << LatencyHistogram.MAX_EXPONENT) - 1);
+    int shift = Math.max(0, 57 - Long.numberOfLeadingZeros(clamped));
+    return (64 * shift) + (int) (clamped >>> shift);
+  }
+
+  // the largest value that goes in the given bucket
+  static long highestIn(int index) {
+    int shift = Math.max(0, (index / 64) - 1);
+    return ((long) (index - (64 * shift)) << shift) + (1L << shift) - 1;
+  }
+
+  // EFFECT: records the given value
+  void record(long value) {
+    this.counts[LatencyHistogram.indexOf(value)] += 1;
+    this.total += 1;
+    this.sum += value;
+    this.max = Math.max(this.max, value);
+  }
+
+  // the value below which the given fraction (between 0 and 1) of the recorded values
+  // fall, or 0 if nothing was recorded
+  long percentile(double fraction) {
+    long wanted = Math.max(1, (long) Math.ceil(fraction * this.total));
+    long seen = 0;
+    for (int i = 0; i < this.counts.length; i += 1) {
+      seen += this.counts[i];
+      if (seen >= wanted) {
+        return Math.min(LatencyHistogram.highestIn(i), this.max);
+      }
+    }
+    return 0;
+  }
+
+  // the average of the recorded values, or 0 if nothing was recorded
+  double mean() {
+    return (double) this.sum / Math.max(1, this.total);
+  }
+
+  // EFFECT: forgets every recorded value
+  void reset() {
+    Arrays.fill(this.counts, 0);
+    this.total = 0;
+    this.sum = 0;
+    this.max = 0;
+  }
+}
@@ -0,0 +1,109 @@
+import java.util.Arrays;
+
+// Records the moves of a game so they can be taken back and played again. A move is
+// kept as the flooding color before it, the color played and the squares it absorbed,
+// sorted and written as the gaps between them in a variable-length byte encoding, so a
+// move takes a few bytes per absorbed square however big the board is
+class MoveHistory {
+  // The encoded squares of every move, one after the other
+  byte[] data = new byte[64];
+  // The encoded squares of move m are data[start[m]] .. data[start[m + 1] - 1]
+  int[] start = new int[17];
+  // The flooding color before every move, and the color it played
+  byte[] previousColor = new byte[16];
+  byte[] playedColor = new byte[16];
+  // How many moves are recorded, and how many of them are currently played
+  int count;
+  int current;
+  // Scratch buffer for sorting the squares of a move
+  int[] sorted = new int[16];
+
+  // can a move be taken back?
+  boolean canUndo() {
+    return this.current > 0;
+  }
+
+  // can a move that was taken back be played again?
+  boolean canRedo() {
+    return this.current < this.count;
+  }
+
+  // EFFECT: records a move played over the given flooding color with the given color,
+  // absorbing the given squares, and forgets the moves that could have been redone
+  void record(int previous, int played, IndexList absorbed) {
+    this.count = this.current;
+    if (this.count + 1 == this.previousColor.length) {
+      this.previousColor = Arrays.copyOf(this.previousColor, this.previousColor.length * 2);
+      this.playedColor = Arrays.copyOf(this.playedColor, this.playedColor.length * 2);
+      this.start = Arrays.copyOf(this.start, this.start.length * 2);
+    }
+    this.previousColor[this.count] = (byte) previous;
+    this.playedColor[this.count] = (byte) played;
+    if (this.sorted.length < absorbed.size()) {
+      this.sorted = new int[absorbed.size() * 2];
+    }
+    for (int k = 0; k < absorbed.size(); k += 1) {
+      this.sorted[k] = absorbed.get(k);
+    }
+    Arrays.sort(this.sorted, 0, absorbed.size());
+    // every gap takes at most 5 bytes
+    int end = this.start[this.count];
+    if (end + (absorbed.size() * 5) > this.data.length) {
+      this.data = Arrays.copyOf(this.data, Math.max(this.data.length * 2,
+          end + (absorbed.size() * 5)));
+    }
+    int last = -1;
+    for (int k = 0; k < absorbed.size(); k += 1) {
+      end = this.writeGap(end, this.sorted[k] - last);
+      last = this.sorted[k];
+    }
+    this.start[this.count + 1] = end;
+    this.count += 1;
+    this.current = this.count;
+  }
+
+  // EFFECT: writes the given positive gap at the given position of the data, seven bits
+  // per byte with the high bit set on all but the last, returning the position after it
+  int writeGap(int position, int gap) {
+    int at = position;
+    int rest = gap;
+    while (rest >= 0x80) {
+      this.data[at] = (byte) ((rest & 0x7F) | 0x80);
+      at += 1;
+      rest >>>= 7;
+    }
+    this.data[at] = (byte) rest;
+    return at + 1;
+  }
+
+  // EFFECT: writes the squares absorbed by the given move into the given list
+  void squares(int move, IndexList into) {
+    into.clear();
+    int at = this.start[move];
+    int square = -1;
+    while (at < this.start[move + 1]) {
+      int gap = 0;
+      int shift = 0;
+      byte next;
+      do {
+        next = this.data[at];
+        at += 1;
+        gap |= (next & 0x7F) << shift;
+        shift += 7;
+      } while (next < 0);
+      square += gap;
+      into.add(square);
+    }
+  }
+
+  // how many bytes the recorded moves take up
+  int encodedSize() {
+    return this.start[this.count];
+  }
+
+  // EFFECT: forgets every move
+  void clear() {
+    this.count = 0;
+    this.current = 0;
+  }
+}
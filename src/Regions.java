@@ -0,0 +1,327 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import java.awt.Color;
+
+// Represents a Board compressed into its maximal single-colored regions: which region
+// each square belongs to, the color, size and squares of every region, and which
+// regions touch each other. All the flooded squares start out in one region
+class RegionGraph {
+  // The number of regions
+  int count;
+  // The region of every square
+  int[] regionOf;
+  // The palette index of every region
+  int[] color;
+  // The number of squares in every region
+  int[] size;
+  // The squares of region r are members[memberStart[r]] .. members[memberStart[r + 1] - 1]
+  int[] memberStart;
+  int[] members;
+  // The regions next to region r are adjacent[adjacentStart[r]] .. up to adjacentStart[r + 1]
+  int[] adjacentStart;
+  int[] adjacent;
+
+  // builds the regions of the given board by joining every square with the squares
+  // next to it that have the same color
+  RegionGraph(Board board) {
+    int cells = board.cellCount();
+    int[] parent = new int[cells];
+    for (int i = 0; i < cells; i += 1) {
+      parent[i] = i;
+    }
+    int[] next = new int[Board.MAX_DEGREE];
+    for (int i = 0; i < cells; i += 1) {
+      int found = board.neighbors(i, next);
+      for (int n = 0; n < found; n += 1) {
+        if (next[n] > i && board.colorIndexAt(next[n]) == board.colorIndexAt(i)) {
+          RegionGraph.union(parent, i, next[n]);
+        }
+      }
+    }
+    this.number(board, parent);
+    this.collectMembers(cells);
+    this.collectAdjacent(board);
+  }
+
+  // the root of the set containing the given element, halving the path on the way
+  static int find(int[] parent, int element) {
+    int current = element;
+    while (parent[current] != current) {
+      parent[current] = parent[parent[current]];
+      current = parent[current];
+    }
+    return current;
+  }
+
+  // EFFECT: joins the sets containing the two given elements, keeping the smaller root
+  static void union(int[] parent, int a, int b) {
+    int rootA = RegionGraph.find(parent, a);
+    int rootB = RegionGraph.find(parent, b);
+    if (rootA < rootB) {
+      parent[rootB] = rootA;
+    }
+    else if (rootB < rootA) {
+      parent[rootA] = rootB;
+    }
+  }
+
+  // EFFECT: numbers the regions in the order their first square appears, so that the
+  // region holding square 0 is region 0
+  void number(Board board, int[] parent) {
+    int cells = parent.length;
+    this.regionOf = new int[cells];
+    this.count = 0;
+    for (int i = 0; i < cells; i += 1) {
+      int root = RegionGraph.find(parent, i);
+      if (root == i) {
+        this.regionOf[i] = this.count;
+        this.count += 1;
+      }
+      else {
+        // roots always come before the squares they hold
+        this.regionOf[i] = this.regionOf[root];
+      }
+    }
+    this.color = new int[this.count];
+    this.size = new int[this.count];
+    for (int i = 0; i < cells; i += 1) {
+      this.color[this.regionOf[i]] = board.colorIndexAt(i);
+      this.size[this.regionOf[i]] += 1;
+    }
+  }
+
+  // EFFECT: groups the squares by region
+  void collectMembers(int cells) {
+    this.memberStart = new int[this.count + 1];
+    for (int r = 0; r < this.count; r += 1) {
+      this.memberStart[r + 1] = this.memberStart[r] + this.size[r];
+    }
+    int[] filled = Arrays.copyOf(this.memberStart, this.count);
+    this.members = new int[cells];
+    for (int i = 0; i < cells; i += 1) {
+      int r = this.regionOf[i];
+      this.members[filled[r]] = i;
+      filled[r] += 1;
+    }
+  }
+
+  // EFFECT: finds the distinct neighboring regions of every region
+  void collectAdjacent(Board board) {
+    // ACC: every pair of touching regions, packed into a long as (from, to)
+    long[] pairs = new long[16];
+    int found = 0;
+    int[] next = new int[Board.MAX_DEGREE];
+    for (int i = 0; i < board.cellCount(); i += 1) {
+      int n = board.neighbors(i, next);
+      for (int k = 0; k < n; k += 1) {
+        int from = this.regionOf[i];
+        int to = this.regionOf[next[k]];
+        if (from != to) {
+          if (found == pairs.length) {
+            pairs = Arrays.copyOf(pairs, found * 2);
+          }
+          pairs[found] = ((long) from << 32) | to;
+          found += 1;
+        }
+      }
+    }
+    Arrays.sort(pairs, 0, found);
+    this.adjacentStart = new int[this.count + 1];
+    this.adjacent = new int[found];
+    int distinct = 0;
+    for (int k = 0; k < found; k += 1) {
+      if (k == 0 || pairs[k] != pairs[k - 1]) {
+        this.adjacent[distinct] = (int) pairs[k];
+        this.adjacentStart[(int) (pairs[k] >>> 32) + 1] += 1;
+        distinct += 1;
+      }
+    }
+    this.adjacent = Arrays.copyOf(this.adjacent, distinct);
+    for (int r = 0; r < this.count; r += 1) {
+      this.adjacentStart[r + 1] += this.adjacentStart[r];
+    }
+  }
+}
+
+// Floods a board through its RegionGraph: a move merges the regions of the chosen color
+// that touch the flooded region into it, and the game is won once only one region is
+// left, so both cost work proportional to regions rather than squares. Every move logs
+// the regions it merged and the ones it added to the boundary, so taking it back only
+// undoes those instead of compressing the board again
+class RegionFloodEngine implements IFloodEngine {
+  // The regions of the board
+  RegionGraph graph;
+  // Union-find over the regions, merged as the flood absorbs them
+  int[] parent;
+  // The number of squares under every root region
+  int[] size;
+  // The regions not yet merged into the flooded region
+  int regionsLeft;
+  // The unflooded regions next to the flooded region, one list per palette index
+  IndexList[] boundary;
+  // Whether every region is in the boundary
+  boolean[] inBoundary;
+  // The squares absorbed by the last flood
+  IndexList absorbed = new IndexList();
+  // The regions merged by every move since the last reset, one move after the other,
+  // and where the regions of every move start
+  IndexList merged = new IndexList();
+  IndexList mergedStart = new IndexList();
+  // The regions added to the boundary by every move, and where those of every move start
+  IndexList added = new IndexList();
+  IndexList addedStart = new IndexList();
+
+  // a board of the given size and shape, dealt with the given number of colors of the
+  // given palette, that this engine can flood
+  public Board newBoard(int size, int numColors, ArrayList<Color> palette,
+      ITopology topology) {
+    return new Board(size, palette, topology);
+  }
+
+  // EFFECT: compresses the given board into regions, with region 0 as the flooded one,
+  // and forgets the moves logged
+  public void reset(Board board) {
+    this.graph = new RegionGraph(board);
+    this.parent = new int[this.graph.count];
+    for (int r = 0; r < this.graph.count; r += 1) {
+      this.parent[r] = r;
+    }
+    this.size = this.graph.size.clone();
+    this.regionsLeft = this.graph.count;
+    this.boundary = new IndexList[board.palette.size()];
+    for (int c = 0; c < this.boundary.length; c += 1) {
+      this.boundary[c] = new IndexList();
+    }
+    this.inBoundary = new boolean[this.graph.count];
+    this.absorbed.clear();
+    this.merged.clear();
+    this.mergedStart.clear();
+    this.added.clear();
+    this.addedStart.clear();
+    // the flooded squares might not have been marked yet
+    for (int k = 0; k < this.graph.size[0]; k += 1) {
+      board.setFlooded(this.graph.members[k]);
+    }
+    this.addNeighbors(0);
+  }
+
+  // EFFECT: merges every boundary region of the given color into the flooded region,
+  // logging the regions merged and the ones added to the boundary
+  public IndexList flood(Board board, int colorIndex) {
+    board.setColorIndex(0, colorIndex);
+    this.absorbed.clear();
+    this.mergedStart.add(this.merged.size());
+    this.addedStart.add(this.added.size());
+    IndexList matching = this.boundary[colorIndex];
+    for (int k = 0; k < matching.size(); k += 1) {
+      int region = matching.get(k);
+      this.merged.add(region);
+      RegionGraph.union(this.parent, 0, region);
+      this.size[0] += this.size[region];
+      this.regionsLeft -= 1;
+      for (int m = this.graph.memberStart[region]; m < this.graph.memberStart[region + 1];
+          m += 1) {
+        board.setFlooded(this.graph.members[m]);
+        this.absorbed.add(this.graph.members[m]);
+      }
+    }
+    // regions of one color never touch, so the merged ones only bring new neighbors
+    for (int k = 0; k < matching.size(); k += 1) {
+      this.addNeighbors(matching.get(k));
+    }
+    matching.clear();
+    return this.absorbed;
+  }
+
+  // is only the flooded region left?
+  public boolean isComplete(Board board) {
+    return this.regionsLeft == 1;
+  }
+
+  // EFFECT: unfloods the given squares, absorbed by the last move that absorbed any,
+  // and takes that move back from the log: its regions are split off the flooded one
+  // and put back in the boundary, and the regions it added there are taken out. A move
+  // that absorbed nothing changed nothing, so its entry is simply dropped. If the log
+  // does not hold the move, the board is compressed again instead
+  public void unflood(Board board, IndexList squares, int colorIndex) {
+    for (int k = 0; k < squares.size(); k += 1) {
+      board.clearFlooded(squares.get(k));
+    }
+    board.setColorIndex(0, colorIndex);
+    if (squares.isEmpty()) {
+      if (!this.mergedStart.isEmpty() && this.lastMerged() == 0) {
+        this.dropLast();
+      }
+      return;
+    }
+    while (!this.mergedStart.isEmpty() && this.lastMerged() == 0) {
+      this.dropLast();
+    }
+    if (this.mergedStart.isEmpty() || this.lastSquares() != squares.size()) {
+      this.reset(board);
+    }
+    else {
+      this.takeBackLast();
+    }
+  }
+
+  // how many regions the last move logged merged
+  int lastMerged() {
+    return this.merged.size() - this.mergedStart.get(this.mergedStart.size() - 1);
+  }
+
+  // how many squares the regions merged by the last move logged hold
+  int lastSquares() {
+    int squares = 0;
+    for (int k = this.mergedStart.get(this.mergedStart.size() - 1); k < this.merged.size();
+        k += 1) {
+      squares += this.graph.size[this.merged.get(k)];
+    }
+    return squares;
+  }
+
+  // EFFECT: splits the regions merged by the last move logged off the flooded region,
+  // puts them back in the boundary of their color, takes the regions it added out of
+  // the boundary, and drops it from the log
+  void takeBackLast() {
+    int addedFrom = this.addedStart.get(this.addedStart.size() - 1);
+    // the regions added last are at the ends of their lists
+    for (int k = this.added.size() - 1; k >= addedFrom; k -= 1) {
+      int region = this.added.get(k);
+      this.inBoundary[region] = false;
+      this.boundary[this.graph.color[region]].count -= 1;
+    }
+    for (int k = this.mergedStart.get(this.mergedStart.size() - 1); k < this.merged.size();
+        k += 1) {
+      int region = this.merged.get(k);
+      this.parent[region] = region;
+      this.size[0] -= this.size[region];
+      this.regionsLeft += 1;
+      this.boundary[this.graph.color[region]].add(region);
+    }
+    this.dropLast();
+  }
+
+  // EFFECT: drops the last move from the log
+  void dropLast() {
+    this.merged.count = this.mergedStart.get(this.mergedStart.size() - 1);
+    this.added.count = this.addedStart.get(this.addedStart.size() - 1);
+    this.mergedStart.count -= 1;
+    this.addedStart.count -= 1;
+  }
+
+  // EFFECT: adds the unmerged neighbors of the given region to the boundary, logging
+  // them as added by the current move
+  void addNeighbors(int region) {
+    for (int k = this.graph.adjacentStart[region]; k < this.graph.adjacentStart[region + 1];
+        k += 1) {
+      int next = this.graph.adjacent[k];
+      if (!this.inBoundary[next] && RegionGraph.find(this.parent, next) != 0) {
+        this.inBoundary[next] = true;
+        this.boundary[this.graph.color[next]].add(next);
+        this.added.add(next);
+      }
+    }
+  }
+}
@@ -0,0 +1,273 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+// Appends finished games to a memory-mapped log file. Every record is the seed, the
+// size, the number of colors, the engine, the shape and the steps of a game, then the
+// board its moves were played from, packed the way GameFile saves it unless the seed
+// deals it, then one byte per move, so the games can be dealt and played again
+// exactly. The header keeps where the last whole record ends, updated after every
+// record, so a log whose writer was never closed still reads back as the games
+// appended to it, not the zeros mapped after them. The file grows by doubling its
+// mapping and is cut back to what was written when the log is closed
+class ReplayLogWriter {
+  // The file being written
+  FileChannel channel;
+  // The mapped part of the file
+  MappedByteBuffer buffer;
+
+  // The first bytes of every log, "FLOG", and the version of the format. Records
+  // before version 3 have no engine or shape, and are all plain grids, and records
+  // before version 4 are all dealt from their seed, with a step per move
+  static final int MAGIC = 0x464C4F47;
+  static final byte VERSION = 4;
+  // Where in the file the end of the records is kept, and where the records start
+  static final int END_AT = 4 + 1;
+  static final int RECORDS_AT = ReplayLogWriter.END_AT + 4;
+  // The bytes in a record before its board and its moves
+  static final int HEADER = 8 + 4 + 1 + 1 + 1 + 1 + 4 + 4;
+
+  // opens the log at the given path, adding to its records if it already has some
+  ReplayLogWriter(Path path) throws IOException {
+    this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+        StandardOpenOption.WRITE);
+    long size = this.channel.size();
+    this.buffer = this.channel.map(FileChannel.MapMode.READ_WRITE, 0,
+        Math.max(size * 2, 1 << 16));
+    if (size == 0) {
+      this.buffer.putInt(ReplayLogWriter.MAGIC);
+      this.buffer.put(ReplayLogWriter.VERSION);
+      this.buffer.putInt(ReplayLogWriter.RECORDS_AT);
+    }
+    else {
+      int end = ReplayLogWriter.recordsEnd(this.buffer, size);
+      if (end < 0) {
+        this.channel.close();
+        throw new IllegalArgumentException("Not a FloodIt replay log: " + path);
+      }
+      if (this.buffer.get(4) != ReplayLogWriter.VERSION) {
+        this.channel.close();
+        throw new IllegalArgumentException("Cannot add to an older FloodIt replay log: "
+            + path);
+      }
+      // anything after the last whole record was never finished, so it is written over
+      this.buffer.position(end);
+    }
+  }
+
+  // where the records of the log in the given buffer, holding a file of the given size,
+  // end, or -1 if it is not a log of a version this one reads or says its records end
+  // past the end of the file
+  static int recordsEnd(MappedByteBuffer buffer, long size) {
+    if (size < ReplayLogWriter.RECORDS_AT || buffer.getInt(0) != ReplayLogWriter.MAGIC
+        || buffer.get(4) < 2 || buffer.get(4) > ReplayLogWriter.VERSION) {
+      return -1;
+    }
+    int end = buffer.getInt(ReplayLogWriter.END_AT);
+    if (end < ReplayLogWriter.RECORDS_AT || end > size) {
+      return -1;
+    }
+    return end;
+  }
+
+  // EFFECT: appends the given game, with the board its moves were played from, such as
+  // the snapshot it was put back to, and the moves played on it so far
+  void append(FloodGame game) throws IOException {
+    byte[] packed = GameFile.packedColors(game);
+    int moves = game.history.current;
+    int bytes = ReplayLogWriter.HEADER + moves;
+    if (packed != null) {
+      bytes += packed.length;
+    }
+    this.ensureRoom(bytes);
+    this.buffer.putLong(game.seed);
+    this.buffer.putInt(game.size);
+    this.buffer.put((byte) game.numColors);
+    this.buffer.put(GameFile.engineCode(game.engine));
+    this.buffer.put(GameFile.topologyCode(game.topology));
+    if (packed != null) {
+      this.buffer.put(GameFile.PACKED);
+    }
+    else {
+      this.buffer.put((byte) 0);
+    }
+    this.buffer.putInt(game.steps);
+    this.buffer.putInt(moves);
+    if (packed != null) {
+      this.buffer.put(packed);
+    }
+    for (int m = 0; m < moves; m += 1) {
+      this.buffer.put(game.history.playedColor[m]);
+    }
+    this.buffer.putInt(ReplayLogWriter.END_AT, this.buffer.position());
+  }
+
+  // EFFECT: maps a bigger part of the file if the given number of bytes do not fit
+  void ensureRoom(int bytes) throws IOException {
+    if (this.buffer.remaining() < bytes) {
+      int position = this.buffer.position();
+      long capacity = Math.max((long) this.buffer.capacity() * 2, position + bytes);
+      if (capacity > Integer.MAX_VALUE) {
+        throw new IOException("A replay log can hold at most 2GB");
+      }
+      this.buffer.force();
+      this.buffer = this.channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+      this.buffer.position(position);
+    }
+  }
+
+  // EFFECT: writes the records out and cuts the file back to them
+  void close() throws IOException {
+    this.buffer.force();
+    this.channel.truncate(this.buffer.position());
+    this.channel.close();
+  }
+}
+
+// Reads the games of a log written by a ReplayLogWriter straight from the mapped file.
+// The log is a cursor over its records: next moves to the following one and the fields
+// describe it, so scanning any number of games allocates nothing
+class ReplayLog {
+  // The mapped file, where it is, and the version of the format it was written in
+  MappedByteBuffer buffer;
+  Path path;
+  byte version;
+  // The seed, size and number of colors of the current game, and the codes GameFile
+  // saves for its engine and its shape
+  long seed;
+  int size;
+  int numColors;
+  byte engine;
+  byte topology;
+  // The steps the current game had taken when it was logged
+  int steps;
+  // Where in the file the packed colors of the board of the current game start, or -1
+  // if its seed deals it
+  int colorsAt;
+  // The number of moves of the current game, and where in the file they start
+  int moveCount;
+  int movesAt;
+
+  ReplayLog(Path path) throws IOException {
+    this.path = path;
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      this.buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+      int end = ReplayLogWriter.recordsEnd(this.buffer, channel.size());
+      if (end < 0) {
+        throw new IllegalArgumentException("Not a FloodIt replay log: " + path);
+      }
+      this.version = this.buffer.get(4);
+      this.buffer.limit(end);
+      this.buffer.position(ReplayLogWriter.RECORDS_AT);
+    }
+  }
+
+  // EFFECT: moves on to the next game, returning false once there are no more. A
+  // record that does not fit in what is left of the log is not a game
+  boolean next() {
+    int header = ReplayLogWriter.HEADER;
+    if (this.version < 4) {
+      header -= 1 + 4;
+    }
+    if (this.version < 3) {
+      header -= 1 + 1;
+    }
+    if (this.buffer.remaining() < header) {
+      return false;
+    }
+    this.seed = this.buffer.getLong();
+    this.size = this.buffer.getInt();
+    this.numColors = this.buffer.get();
+    this.engine = 0;
+    this.topology = 0;
+    if (this.version >= 3) {
+      this.engine = this.buffer.get();
+      this.topology = this.buffer.get();
+    }
+    boolean packed = false;
+    if (this.version >= 4) {
+      packed = this.buffer.get() == GameFile.PACKED;
+      this.steps = this.buffer.getInt();
+    }
+    this.moveCount = this.buffer.getInt();
+    if (this.version < 4) {
+      this.steps = this.moveCount;
+    }
+    long colorBytes = 0;
+    if (packed) {
+      colorBytes = (((long) this.size * this.size) + 1) / 2;
+    }
+    if (this.size < 1 || this.size > GameFile.MAX_SIZE || this.numColors < 1
+        || this.numColors > GameFile.MAX_COLORS || this.moveCount < 0
+        || this.buffer.remaining() < colorBytes + this.moveCount) {
+      throw new IllegalArgumentException("Not a FloodIt replay log: " + this.path);
+    }
+    this.colorsAt = -1;
+    if (packed) {
+      this.colorsAt = this.buffer.position();
+    }
+    this.movesAt = this.buffer.position() + (int) colorBytes;
+    this.buffer.position(this.movesAt + this.moveCount);
+    return true;
+  }
+
+  // the colors of the board of the current game, or null if its seed deals it
+  byte[] colors() {
+    if (this.colorsAt < 0) {
+      return null;
+    }
+    ByteBuffer in = this.buffer.duplicate();
+    in.position(this.colorsAt);
+    byte[] colors = GameFile.unpack(in, this.size * this.size, this.numColors);
+    if (colors == null) {
+      throw new IllegalArgumentException("Not a FloodIt replay log: " + this.path);
+    }
+    return colors;
+  }
+
+  // the color played by the given move of the current game
+  int move(int k) {
+    return this.buffer.get(this.movesAt + k);
+  }
+
+  // a new game dealt like the current one, with its engine, its shape and its board,
+  // and its moves played again
+  FloodGame replay() {
+    FloodGame game = new FloodGame(this.size, this.numColors,
+        GameFile.engineFor(this.engine), this.seed, GameFile.topologyFor(this.topology),
+        this.colors());
+    this.playMoves(game);
+    return game;
+  }
+
+  // EFFECT: deals the current game again on the given one, which must have the same
+  // size, number of colors and shape, and plays its moves again, so that replaying
+  // many games does not allocate
+  void replay(FloodGame game) {
+    if (game.size != this.size || game.numColors != this.numColors
+        || GameFile.topologyCode(game.topology) != this.topology) {
+      throw new IllegalArgumentException("Cannot replay a " + this.size + "x" + this.size
+          + " " + GameFile.topologyFor(this.topology).name() + " game with "
+          + this.numColors + " colors on this one");
+    }
+    if (this.colorsAt < 0) {
+      game.restart(this.seed);
+    }
+    else {
+      game.restart(this.seed, this.colors());
+    }
+    this.playMoves(game);
+  }
+
+  // EFFECT: plays the moves of the current game on the given one, leaving it with the
+  // steps it had taken
+  void playMoves(FloodGame game) {
+    for (int k = 0; k < this.moveCount; k += 1) {
+      game.applyMove(this.move(k));
+    }
+    game.steps = this.steps;
+  }
+}
@@ -0,0 +1,84 @@
+import java.awt.Color;
+import javalib.impworld.*;
+import javalib.worldimages.*;
+
+// Keeps the images that make up the scene of a game between frames. The black border
+// and the titles never change for a board size, so they are built once, and every text
+// layer is only rebuilt when the text it shows changes
+class SceneLayers {
+  // Size * size will give us the gameboard
+  int size;
+  // Black border of our game
+  WorldImage border;
+  // The title and size of this game, down the left and right sides
+  WorldImage titleLeft;
+  WorldImage titleRight;
+  // Counts the amount of steps used and remaining, while playing and at the end
+  TextLayer steps;
+  TextLayer endSteps;
+  // Counts the time elapsed in seconds
+  TextLayer time;
+  // The final message for the game
+  TextLayer endMessage;
+
+  SceneLayers(int size, int timerSize, int endSize) {
+    this.size = size;
+    this.border = new RectangleImage(50 * (size + 2), 50 * (size + 2), OutlineMode.SOLID,
+        Color.black).movePinholeTo(new Posn(0, 0));
+    this.titleLeft = new RotateImage(
+        new TextImage("FloodIt!", timerSize, Color.MAGENTA).movePinholeTo(new Posn(0, 0)), 270);
+    this.titleRight = new RotateImage(
+        new TextImage("size: " + String.valueOf(size) + "x" + String.valueOf(size), timerSize,
+            Color.MAGENTA).movePinholeTo(new Posn(0, 0)),
+        90);
+    this.steps = new TextLayer(25, FontStyle.BOLD);
+    this.endSteps = new TextLayer(25, FontStyle.REGULAR);
+    this.time = new TextLayer(timerSize, FontStyle.REGULAR);
+    this.endMessage = new TextLayer(endSize, FontStyle.REGULAR);
+  }
+
+  // Places the given board, the text at the bottom and the text at the top over the
+  // static layers of a new scene
+  WorldScene compose(WorldImage board, WorldImage bottom, WorldImage top) {
+    int side = 50 * (this.size + 2);
+    WorldScene current = new WorldScene(side, side);
+    current.placeImageXY(this.border, side / 2, side / 2);
+    current.placeImageXY(board, side / 2, side / 2);
+    current.placeImageXY(bottom, side / 2, (int) (50 * (this.size + 1.5)));
+    current.placeImageXY(top, side / 2, (int) (50 * (0.5)));
+    current.placeImageXY(this.titleLeft, 25, side / 2);
+    current.placeImageXY(this.titleRight, side - 25, side / 2);
+    return current;
+  }
+}
+
+// A white line of text that keeps its image until the text changes
+class TextLayer {
+  // The font size and style of the text
+  double fontSize;
+  FontStyle style;
+  // The text shown by the image, null before the first draw
+  String shown;
+  WorldImage image;
+
+  TextLayer(double fontSize, FontStyle style) {
+    this.fontSize = fontSize;
+    this.style = style;
+  }
+
+  // Produces the image of the given text, reusing the last one if the text is the same.
+  // Empty text has an empty image
+  WorldImage draw(String text) {
+    if (!text.equals(this.shown)) {
+      this.shown = text;
+      if (text.isEmpty()) {
+        this.image = new EmptyImage();
+      }
+      else {
+        this.image = new TextImage(text, this.fontSize, this.style, Color.white)
+            .movePinholeTo(new Posn(0, 0));
+      }
+    }
+    return this.image;
+  }
+}
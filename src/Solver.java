@@ -0,0 +1,465 @@
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.PriorityQueue;
+import java.util.SplittableRandom;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import java.awt.Color;
+
+// Represents a sequence of moves that floods a whole board
+class Solution {
+  // The colors (as indices into loc) to play, in order
+  int[] moves;
+  // Whether no shorter sequence exists
+  boolean exact;
+  // How many search states were looked at to find it
+  int expanded;
+
+  Solution(int[] moves, boolean exact, int expanded) {
+    this.moves = moves;
+    this.exact = exact;
+    this.expanded = expanded;
+  }
+
+  // the number of moves of this solution
+  int length() {
+    return this.moves.length;
+  }
+}
+
+// Represents the colors played to reach a SolverState, newest first, sharing the
+// colors played before the last one with the state it was played from. A path costs
+// one small node per move and keeps none of the bitsets of the states along it alive
+class SolverPath {
+  // The colors played before this one, null if this was the first move
+  SolverPath previous;
+  // The color played
+  int color;
+
+  SolverPath(SolverPath previous, int color) {
+    this.previous = previous;
+    this.color = color;
+  }
+}
+
+// Represents one position of a search over the regions of a board: which regions are
+// flooded, which unflooded regions touch them, and how it was reached
+class SolverState {
+  // One bit per region, set when the region is flooded
+  long[] flooded;
+  // One bit per region, set when the region is unflooded and next to a flooded one
+  long[] boundary;
+  // The xor of the keys of the flooded regions
+  long hash;
+  // How many cells are flooded
+  int cells;
+  // How many moves were played to get here, and the estimate of how many are left
+  int moves;
+  int estimate;
+  // The colors played to reach this state, null at the start
+  SolverPath played;
+
+  SolverState(long[] flooded, long[] boundary, long hash, int cells, int moves,
+      SolverPath played) {
+    this.flooded = flooded;
+    this.boundary = boundary;
+    this.hash = hash;
+    this.cells = cells;
+    this.moves = moves;
+    this.played = played;
+  }
+
+  // the colors played to reach this state, in order
+  int[] path() {
+    int[] result = new int[this.moves];
+    SolverPath current = this.played;
+    for (int k = this.moves - 1; k >= 0; k -= 1) {
+      result[k] = current.color;
+      current = current.previous;
+    }
+    return result;
+  }
+}
+
+// Finds short sequences of moves that flood a board, working on its RegionGraph so a
+// move is a handful of word operations. Greedy and beam search give quick answers, and
+// an A* search with an admissible estimate and a transposition table keyed on the hash
+// of the flooded regions finds the shortest one when it fits in its budget. Every
+// search gives up once its budget of time or states is spent
+class FloodSolver {
+  // The regions of the board being solved
+  RegionGraph graph;
+  // The number of colors in the palette
+  int numColors;
+  // The total number of cells
+  int cells;
+  // One bitset over the regions per palette index, set for the regions of that color
+  long[][] colorMasks;
+  // A random key per region, xored together to hash a set of flooded regions
+  long[] keys;
+  // The answer being worked out in the background, null if the solver is not running
+  // there. Every search gives up once nobody is waiting for the answer any more
+  CompletableFuture<Solution> answer;
+
+  // How many searches may wait for the background thread. Once that many wait, the
+  // one that waited longest is given up, so a burst of new boards only solves the last
+  static final int WAITING = 2;
+  // Runs the solvers started in the background, one at a time
+  static final ThreadPoolExecutor BACKGROUND = new ThreadPoolExecutor(1, 1, 0,
+      TimeUnit.SECONDS, new ArrayBlockingQueue<Runnable>(FloodSolver.WAITING), task -> {
+        Thread thread = new Thread(task, "floodit-solver");
+        thread.setDaemon(true);
+        return thread;
+      }, (task, executor) -> FloodSolver.giveUpOldest(task, executor));
+
+  FloodSolver(Board board) {
+    this.graph = new RegionGraph(board);
+    this.numColors = board.palette.size();
+    this.cells = board.cellCount();
+    int words = (this.graph.count + 63) >>> 6;
+    this.colorMasks = new long[this.numColors][words];
+    this.keys = new long[this.graph.count];
+    SplittableRandom rand = new SplittableRandom(this.graph.count);
+    for (int r = 0; r < this.graph.count; r += 1) {
+      this.colorMasks[this.graph.color[r]][r >>> 6] |= 1L << r;
+      this.keys[r] = rand.nextLong();
+    }
+  }
+
+  // the state with only the first region flooded
+  SolverState start() {
+    int words = this.colorMasks[0].length;
+    long[] flooded = new long[words];
+    flooded[0] = 1L;
+    long[] boundary = new long[words];
+    this.addNeighbors(0, flooded, boundary);
+    return new SolverState(flooded, boundary, this.keys[0], this.graph.size[0], 0, null);
+  }
+
+  // the state reached by playing the given color from the given one, or null if the
+  // move would absorb nothing
+  SolverState play(SolverState state, int color) {
+    long[] mask = this.colorMasks[color];
+    long[] flooded = null;
+    long[] boundary = null;
+    long hash = state.hash;
+    int cells = state.cells;
+    for (int w = 0; w < mask.length; w += 1) {
+      long absorbed = state.boundary[w] & mask[w];
+      if (absorbed != 0) {
+        if (flooded == null) {
+          flooded = state.flooded.clone();
+          boundary = state.boundary.clone();
+        }
+        flooded[w] |= absorbed;
+        boundary[w] &= ~absorbed;
+        for (long rest = absorbed; rest != 0; rest &= rest - 1) {
+          int region = (w << 6) + Long.numberOfTrailingZeros(rest);
+          hash ^= this.keys[region];
+          cells += this.graph.size[region];
+        }
+      }
+    }
+    if (flooded == null) {
+      return null;
+    }
+    // regions of one color never touch, so only the absorbed ones bring new neighbors
+    for (int w = 0; w < mask.length; w += 1) {
+      for (long rest = state.boundary[w] & mask[w]; rest != 0; rest &= rest - 1) {
+        this.addNeighbors((w << 6) + Long.numberOfTrailingZeros(rest), flooded, boundary);
+      }
+    }
+    return new SolverState(flooded, boundary, hash, cells, state.moves + 1,
+        new SolverPath(state.played, color));
+  }
+
+  // EFFECT: adds the unflooded neighbors of the given region to the given boundary
+  void addNeighbors(int region, long[] flooded, long[] boundary) {
+    for (int k = this.graph.adjacentStart[region]; k < this.graph.adjacentStart[region + 1];
+        k += 1) {
+      int next = this.graph.adjacent[k];
+      if ((flooded[next >>> 6] & (1L << next)) == 0) {
+        boundary[next >>> 6] |= 1L << next;
+      }
+    }
+  }
+
+  // is every cell of the given state flooded?
+  boolean isComplete(SolverState state) {
+    return state.cells == this.cells;
+  }
+
+  // how many colors still have unflooded regions in the given state
+  int colorsLeft(SolverState state) {
+    int result = 0;
+    for (long[] mask : this.colorMasks) {
+      for (int w = 0; w < mask.length; w += 1) {
+        if ((mask[w] & ~state.flooded[w]) != 0) {
+          result += 1;
+          break;
+        }
+      }
+    }
+    return result;
+  }
+
+  // how many moves the farthest unflooded region is from the flooded ones, counting
+  // the regions in the boundary as one move away
+  int farthest(SolverState state) {
+    int[] distance = new int[this.graph.count];
+    int[] queue = new int[this.graph.count];
+    int tail = 0;
+    for (int w = 0; w < state.boundary.length; w += 1) {
+      for (long rest = state.boundary[w]; rest != 0; rest &= rest - 1) {
+        int region = (w << 6) + Long.numberOfTrailingZeros(rest);
+        distance[region] = 1;
+        queue[tail] = region;
+        tail += 1;
+      }
+    }
+    int result = 0;
+    for (int head = 0; head < tail; head += 1) {
+      int region = queue[head];
+      result = distance[region];
+      for (int k = this.graph.adjacentStart[region]; k < this.graph.adjacentStart[region + 1];
+          k += 1) {
+        int next = this.graph.adjacent[k];
+        if (distance[next] == 0 && (state.flooded[next >>> 6] & (1L << next)) == 0) {
+          distance[next] = result + 1;
+          queue[tail] = next;
+          tail += 1;
+        }
+      }
+    }
+    return result;
+  }
+
+  // a lower bound on the moves left from the given state: every color left needs a
+  // move, and a move only reaches one region further
+  int estimate(SolverState state) {
+    return Math.max(this.colorsLeft(state), this.farthest(state));
+  }
+
+  // has the given deadline passed, or has the answer stopped being wanted?
+  boolean givingUp(long deadline) {
+    return System.nanoTime() > deadline || (this.answer != null && this.answer.isDone());
+  }
+
+  // plays the color that absorbs the most cells, until the board is flooded
+  Solution greedy() {
+    return this.greedy(Long.MAX_VALUE, Integer.MAX_VALUE);
+  }
+
+  // plays the color that absorbs the most cells, until the board is flooded, or gives
+  // up, producing null, once the given deadline (in System.nanoTime) has passed or the
+  // given number of states have been looked at
+  Solution greedy(long deadline, int maxStates) {
+    SolverState state = this.start();
+    int expanded = 0;
+    while (!this.isComplete(state)) {
+      if (expanded > maxStates || this.givingUp(deadline)) {
+        return null;
+      }
+      SolverState best = null;
+      for (int c = 0; c < this.numColors; c += 1) {
+        SolverState next = this.play(state, c);
+        expanded += 1;
+        if (next != null && (best == null || next.cells > best.cells)) {
+          best = next;
+        }
+      }
+      state = best;
+    }
+    return new Solution(state.path(), false, expanded);
+  }
+
+  // keeps the given number of most flooded states at every depth, until one of them
+  // floods the whole board
+  Solution beam(int width) {
+    return this.beam(width, Long.MAX_VALUE, Integer.MAX_VALUE);
+  }
+
+  // keeps the given number of most flooded states at every depth, until one of them
+  // floods the whole board, or gives up, producing null, once the given deadline (in
+  // System.nanoTime) has passed or the given number of states have been looked at
+  Solution beam(int width, long deadline, int maxStates) {
+    ArrayList<SolverState> layer = new ArrayList<SolverState>();
+    layer.add(this.start());
+    int expanded = 0;
+    while (true) {
+      if (expanded > maxStates || this.givingUp(deadline)) {
+        return null;
+      }
+      ArrayList<SolverState> next = new ArrayList<SolverState>();
+      HashSet<Long> seen = new HashSet<Long>();
+      for (SolverState state : layer) {
+        if (this.isComplete(state)) {
+          return new Solution(state.path(), false, expanded);
+        }
+        for (int c = 0; c < this.numColors; c += 1) {
+          SolverState child = this.play(state, c);
+          expanded += 1;
+          if (child != null && seen.add(child.hash)) {
+            child.estimate = this.colorsLeft(child);
+            next.add(child);
+          }
+        }
+      }
+      // most cells first, then fewest colors left
+      next.sort((a, b) -> {
+        if (a.cells != b.cells) {
+          return b.cells - a.cells;
+        }
+        return a.estimate - b.estimate;
+      });
+      layer = new ArrayList<SolverState>(next.subList(0, Math.min(width, next.size())));
+    }
+  }
+
+  // finds the shortest solution with A*, only looking for ones shorter than the given
+  // solution, which is known to be optimal if none is found. Gives up, producing null,
+  // once the given number of nanoseconds have passed or the given number of states
+  // have been stored. An expansion floods and estimates a state per color, which can
+  // take a while on a big board, so the clock is read before every one
+  Solution exact(long budgetNanos, int maxStates, Solution bound) {
+    long deadline = System.nanoTime() + budgetNanos;
+    PriorityQueue<SolverState> open = new PriorityQueue<SolverState>((a, b) -> {
+      int f = (a.moves + a.estimate) - (b.moves + b.estimate);
+      if (f != 0) {
+        return f;
+      }
+      return b.cells - a.cells;
+    });
+    // ACC: the fewest moves each set of flooded regions has been reached in
+    HashMap<Long, Integer> table = new HashMap<Long, Integer>();
+    SolverState first = this.start();
+    first.estimate = this.estimate(first);
+    open.add(first);
+    table.put(first.hash, 0);
+    int expanded = 0;
+    while (!open.isEmpty()) {
+      SolverState state = open.poll();
+      if (this.isComplete(state)) {
+        return new Solution(state.path(), true, expanded);
+      }
+      if (state.moves > table.get(state.hash)) {
+        // a shorter way here was found after this one was queued
+        continue;
+      }
+      expanded += 1;
+      if (table.size() > maxStates || this.givingUp(deadline)) {
+        return null;
+      }
+      for (int c = 0; c < this.numColors; c += 1) {
+        SolverState child = this.play(state, c);
+        if (child != null) {
+          Integer known = table.get(child.hash);
+          if (known == null || child.moves < known) {
+            child.estimate = this.estimate(child);
+            if (child.moves + child.estimate < bound.length()) {
+              table.put(child.hash, child.moves);
+              open.add(child);
+            }
+          }
+        }
+      }
+    }
+    // nothing shorter than the bound exists
+    return new Solution(bound.moves, true, expanded);
+  }
+
+  // the best solution found within the given time and memory budget, shared by all
+  // the searches: exact if the search finishes, otherwise the better of the greedy and
+  // beam solutions, or null if not even the greedy one was found in time. The exact
+  // search is not started once the budget is spent
+  Solution solve(long budgetNanos, int maxStates) {
+    long deadline = System.nanoTime() + budgetNanos;
+    Solution best = this.greedy(deadline, maxStates);
+    if (best == null) {
+      return null;
+    }
+    Solution beam = this.beam(16, deadline, maxStates);
+    if (beam != null && beam.length() < best.length()) {
+      best = beam;
+    }
+    long left = deadline - System.nanoTime();
+    if (left <= 0) {
+      return best;
+    }
+    Solution exact = this.exact(left, maxStates, best);
+    if (exact != null) {
+      return exact;
+    }
+    else {
+      return best;
+    }
+  }
+
+  // solves the given board from where it stands on the background thread, so the
+  // caller can keep playing while it runs. The caller only takes a snapshot of the
+  // board, sharing the chunks unchanged since the last one, and the copy the solver
+  // works on is made from it in the background. Cancelling the answer stops the
+  // search, or skips it if it has not started yet
+  static CompletableFuture<Solution> solveLater(Board board, long budgetNanos,
+      int maxStates) {
+    SolverTask task = new SolverTask(board.snapshot(), board.palette, board.topology,
+        budgetNanos, maxStates);
+    FloodSolver.BACKGROUND.execute(task);
+    return task.answer;
+  }
+
+  // EFFECT: gives up the search that has waited longest for the background thread, so
+  // that the given one can wait in its place
+  static void giveUpOldest(Runnable task, ThreadPoolExecutor executor) {
+    Runnable oldest = executor.getQueue().poll();
+    if (oldest instanceof SolverTask) {
+      ((SolverTask) oldest).answer.cancel(false);
+    }
+    executor.execute(task);
+  }
+}
+
+// Represents a board to solve on the solver's background thread, as a snapshot taken
+// while the game goes on, and the answer the solution is wanted for
+class SolverTask implements Runnable {
+  // The board to solve
+  BoardSnapshot snapshot;
+  ArrayList<Color> palette;
+  ITopology topology;
+  // The budget of the search
+  long budgetNanos;
+  int maxStates;
+  // Completed with the solution, null if none was found in time
+  CompletableFuture<Solution> answer = new CompletableFuture<Solution>();
+
+  SolverTask(BoardSnapshot snapshot, ArrayList<Color> palette, ITopology topology,
+      long budgetNanos, int maxStates) {
+    this.snapshot = snapshot;
+    this.palette = palette;
+    this.topology = topology;
+    this.budgetNanos = budgetNanos;
+    this.maxStates = maxStates;
+  }
+
+  // EFFECT: copies the board out of the snapshot and solves it, unless the answer was
+  // cancelled while the task waited
+  public void run() {
+    if (this.answer.isDone()) {
+      return;
+    }
+    try {
+      Board copy = this.snapshot.newBoard(this.palette, this.topology);
+      copy.restore(this.snapshot);
+      FloodSolver solver = new FloodSolver(copy);
+      solver.answer = this.answer;
+      this.answer.complete(solver.solve(this.budgetNanos, this.maxStates));
+    }
+    catch (RuntimeException | OutOfMemoryError e) {
+      this.answer.completeExceptionally(e);
+    }
+  }
+}
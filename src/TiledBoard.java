@@ -0,0 +1,905 @@
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.stream.IntStream;
+
+import java.awt.Color;
+import javalib.worldimages.*;
+
+// Represents a board too big for the heap, split into tiles of 64x64 squares kept off
+// the heap. A tile is 64 words, one per column with one bit per row, for every color
+// plane and for the flooded squares, so a flood grows a whole column of a tile at once.
+// Only the tiles on the edge of the flood are looked at by a move: tiles that are
+// completely flooded or that the flood has not reached yet are skipped. The board is a
+// plain grid, dealt and played through a FloodGame like any other. Its squares are not
+// in the arrays of a Board, so it answers for them square by square, and a snapshot of
+// it copies the tiles changed since the last one
+class TiledBoard extends Board {
+  // The number of colors the board was dealt with
+  int numColors;
+  // The number of tiles along each side, and in all
+  int tilesPerSide;
+  int tileCount;
+  // The words of the tiles, a slab of SLAB_TILES tiles per buffer. The words of tile t
+  // start at (t % SLAB_TILES) * stride in slab t / SLAB_TILES: 64 per color plane,
+  // then 64 for the flooded squares
+  LongBuffer[] slabs;
+  int stride;
+  // How many squares of every tile are flooded
+  int[] floodedInTile;
+  // The colors (one bit per palette index) that every tile may still have unflooded
+  int[] colorsInTile;
+  // The tiles that are not completely flooded but that the flood has reached
+  IndexList active = new IndexList();
+  boolean[] isActive;
+  // The tiles left to flood during a move
+  IndexList queue = new IndexList();
+  boolean[] queued;
+  // The tiles whose squares were absorbed by the last move, and the squares
+  IndexList touched = new IndexList();
+  IndexList absorbed = new IndexList();
+  // The color of the flooded squares
+  int floodColor;
+  // Scratch words for the tile being flooded: its plane of the flooding color, its
+  // flooded squares, and the flooded squares next to it in the neighboring tiles
+  long[] plane = new long[64];
+  long[] reached = new long[64];
+  long[] outside = new long[64];
+
+  // The number of squares along each side of a tile, as a power of two
+  static final int TILE_BITS = 6;
+  static final int TILE = 1 << TiledBoard.TILE_BITS;
+  // How many tiles share one off-heap buffer
+  static final int SLAB_TILES = 1024;
+
+  TiledBoard(int size, ArrayList<Color> palette, int numColors) {
+    super(size, palette, new GridTopology(), false);
+    this.numColors = numColors;
+    this.tilesPerSide = ((size - 1) >>> TiledBoard.TILE_BITS) + 1;
+    this.tileCount = this.tilesPerSide * this.tilesPerSide;
+    this.stride = (numColors + 1) * TiledBoard.TILE;
+    int slabCount = ((this.tileCount - 1) / TiledBoard.SLAB_TILES) + 1;
+    this.slabs = new LongBuffer[slabCount];
+    for (int s = 0; s < slabCount; s += 1) {
+      int tiles = Math.min(TiledBoard.SLAB_TILES, this.tileCount - (s * TiledBoard.SLAB_TILES));
+      this.slabs[s] = ByteBuffer.allocateDirect(tiles * this.stride * 8)
+          .order(ByteOrder.nativeOrder()).asLongBuffer();
+    }
+    this.floodedInTile = new int[this.tileCount];
+    this.colorsInTile = new int[this.tileCount];
+    this.isActive = new boolean[this.tileCount];
+    this.queued = new boolean[this.tileCount];
+    // snapshots share whole tiles rather than chunks of squares
+    this.dirty = new boolean[this.tileCount];
+  }
+
+  // EFFECT: colors every square the way the given game deals them from the given seed,
+  // chunk by chunk in the order of the square indices, then starts the flood over. Two
+  // chunks next to each other can share a word of a tile, so the even chunks are
+  // colored first, then the odd ones
+  void deal(FloodGame game, long seed, boolean parallel) {
+    SplittableRandom[] generators = game.generators(seed, this.cellCount());
+    IntStream tiles = IntStream.range(0, this.tileCount);
+    if (parallel) {
+      tiles = tiles.parallel();
+    }
+    tiles.forEach(t -> this.clearTile(t));
+    for (int phase = 0; phase < 2; phase += 1) {
+      int first = phase;
+      IntStream chunks = IntStream.range(0, (generators.length + 1 - phase) / 2)
+          .map(k -> (2 * k) + first);
+      if (parallel) {
+        chunks = chunks.parallel();
+      }
+      chunks.forEach(k -> this.dealChunk(game, k, generators[k]));
+    }
+    this.startOver();
+  }
+
+  // EFFECT: colors the squares of the given chunk with the given generator, the way the
+  // given game colors the same chunk of a board on the heap
+  void dealChunk(FloodGame game, int chunk, SplittableRandom rand) {
+    int start = chunk * FloodGame.CHUNK;
+    int end = Math.min(this.cellCount(), start + FloodGame.CHUNK);
+    int x = start / this.size;
+    int y = start % this.size;
+    for (int i = start; i < end; i += 1) {
+      int tile = this.tileAt(x, y);
+      int at = this.baseOf(tile) + (game.chooseColor(rand) * TiledBoard.TILE)
+          + (x & (TiledBoard.TILE - 1));
+      LongBuffer words = this.slabOf(tile);
+      words.put(at, words.get(at) | (1L << y));
+      y += 1;
+      if (y == this.size) {
+        y = 0;
+        x += 1;
+      }
+    }
+  }
+
+  // EFFECT: clears every word of the given tile
+  void clearTile(int tile) {
+    LongBuffer words = this.slabOf(tile);
+    int base = this.baseOf(tile);
+    for (int k = 0; k < this.stride; k += 1) {
+      words.put(base + k, 0);
+    }
+  }
+
+  // the buffer holding the words of the given tile
+  LongBuffer slabOf(int tile) {
+    return this.slabs[tile / TiledBoard.SLAB_TILES];
+  }
+
+  // where the words of the given tile start in its buffer
+  int baseOf(int tile) {
+    return (tile % TiledBoard.SLAB_TILES) * this.stride;
+  }
+
+  // how many columns (or rows) the tiles in the given column (or row) of tiles have
+  int widthOf(int tileColumn) {
+    return Math.min(TiledBoard.TILE, this.size - (tileColumn << TiledBoard.TILE_BITS));
+  }
+
+  // how many squares the given tile has
+  int cellsIn(int tile) {
+    return this.widthOf(tile % this.tilesPerSide) * this.widthOf(tile / this.tilesPerSide);
+  }
+
+  // the tile holding the square at (x, y)
+  int tileAt(int x, int y) {
+    return ((y >>> TiledBoard.TILE_BITS) * this.tilesPerSide) + (x >>> TiledBoard.TILE_BITS);
+  }
+
+  // the flooded word of the given column of the given tile
+  long floodedWord(int tile, int column) {
+    return this.slabOf(tile).get(this.baseOf(tile) + (this.numColors * TiledBoard.TILE)
+        + column);
+  }
+
+  // is the square at (x, y) flooded?
+  boolean isFlooded(int x, int y) {
+    long word = this.floodedWord(this.tileAt(x, y), x & (TiledBoard.TILE - 1));
+    return (word & (1L << y)) != 0;
+  }
+
+  // the palette index the square at (x, y) was dealt
+  int dealtColorAt(int x, int y) {
+    int tile = this.tileAt(x, y);
+    LongBuffer words = this.slabOf(tile);
+    int at = this.baseOf(tile) + (x & (TiledBoard.TILE - 1));
+    for (int c = 0; c < this.numColors; c += 1) {
+      if ((words.get(at + (c * TiledBoard.TILE)) & (1L << y)) != 0) {
+        return c;
+      }
+    }
+    return 0;
+  }
+
+  // the palette index of the square at (x, y), flooded squares all share the
+  // flooding color
+  int colorIndexAt(int x, int y) {
+    if (this.isFlooded(x, y)) {
+      return this.floodColor;
+    }
+    else {
+      return this.dealtColorAt(x, y);
+    }
+  }
+
+  // EFFECT: sets the palette index the square at (x, y) was dealt, leaving the counts
+  // to whoever called
+  void setDealtColor(int x, int y, int colorIndex) {
+    int tile = this.tileAt(x, y);
+    LongBuffer words = this.slabOf(tile);
+    int at = this.baseOf(tile) + (x & (TiledBoard.TILE - 1));
+    this.dirty[tile] = true;
+    for (int c = 0; c < this.numColors; c += 1) {
+      int word = at + (c * TiledBoard.TILE);
+      if (c == colorIndex) {
+        words.put(word, words.get(word) | (1L << y));
+      }
+      else {
+        words.put(word, words.get(word) & ~(1L << y));
+      }
+    }
+  }
+
+  // the number of squares on this board
+  int cellCount() {
+    return this.size * this.size;
+  }
+
+  // is the square at the given index flooded?
+  boolean isFlooded(int index) {
+    return this.isFlooded(index / this.size, index % this.size);
+  }
+
+  // the index of the first flooded square at or after the given one, or -1 if there
+  // is none, skipping a tile's part of a column with one word
+  int nextFlooded(int from) {
+    int x = from / this.size;
+    int y = from % this.size;
+    while (x < this.size) {
+      int tile = this.tileAt(x, y);
+      if (this.floodedInTile[tile] > 0) {
+        long word = this.floodedWord(tile, x & (TiledBoard.TILE - 1)) & (-1L << y);
+        if (word != 0) {
+          return (x * this.size) + (y & -TiledBoard.TILE) + Long.numberOfTrailingZeros(word);
+        }
+      }
+      y = (y | (TiledBoard.TILE - 1)) + 1;
+      if (y >= this.size) {
+        y = 0;
+        x += 1;
+      }
+    }
+    return -1;
+  }
+
+  // the palette index of the square at the given index, flooded squares all share
+  // the flooding color
+  int colorIndexAt(int index) {
+    return this.colorIndexAt(index / this.size, index % this.size);
+  }
+
+  // EFFECT: sets the palette index of the square at the given index. The first square
+  // is always flooded, so its color is the flooding color
+  void setColorIndex(int index, int colorIndex) {
+    int x = index / this.size;
+    int y = index % this.size;
+    if (!this.isFlooded(x, y)) {
+      this.remaining[this.dealtColorAt(x, y)] -= 1;
+      this.remaining[colorIndex] += 1;
+      this.colorsInTile[this.tileAt(x, y)] |= 1 << colorIndex;
+    }
+    this.setDealtColor(x, y, colorIndex);
+    if (index == 0) {
+      this.floodColor = colorIndex;
+    }
+  }
+
+  // EFFECT: marks the square at the given index as flooded, and its tile and the ones
+  // around it as reached by the flood
+  void setFlooded(int index) {
+    int x = index / this.size;
+    int y = index % this.size;
+    if (!this.isFlooded(x, y)) {
+      int tile = this.tileAt(x, y);
+      int at = this.baseOf(tile) + (this.numColors * TiledBoard.TILE)
+          + (x & (TiledBoard.TILE - 1));
+      LongBuffer words = this.slabOf(tile);
+      words.put(at, words.get(at) | (1L << y));
+      this.dirty[tile] = true;
+      this.floodedInTile[tile] += 1;
+      this.floodedCount += 1;
+      this.remaining[this.dealtColorAt(x, y)] -= 1;
+      this.activateAround(tile);
+    }
+  }
+
+  // EFFECT: marks the square at the given index as not flooded, and its tile as
+  // reached by the flood
+  void clearFlooded(int index) {
+    int x = index / this.size;
+    int y = index % this.size;
+    if (this.isFlooded(x, y)) {
+      int tile = this.tileAt(x, y);
+      int at = this.baseOf(tile) + (this.numColors * TiledBoard.TILE)
+          + (x & (TiledBoard.TILE - 1));
+      LongBuffer words = this.slabOf(tile);
+      words.put(at, words.get(at) & ~(1L << y));
+      int dealt = this.dealtColorAt(x, y);
+      this.dirty[tile] = true;
+      this.floodedInTile[tile] -= 1;
+      this.floodedCount -= 1;
+      this.remaining[dealt] += 1;
+      this.colorsInTile[tile] |= 1 << dealt;
+      this.activate(tile);
+    }
+  }
+
+  // EFFECT: floods the square at the given index if it has the given color
+  void floodIfMatching(int index, int colorIndex) {
+    if (!this.isFlooded(index)
+        && this.dealtColorAt(index / this.size, index % this.size) == colorIndex) {
+      this.setFlooded(index);
+    }
+  }
+
+  // has every square on this board been flooded?
+  boolean allFlooded() {
+    return this.floodedCount == this.cellCount();
+  }
+
+  // the palette index every square was dealt, in a new array
+  byte[] dealtColors() {
+    byte[] colors = new byte[this.cellCount()];
+    for (int i = 0; i < colors.length; i += 1) {
+      colors[i] = (byte) this.dealtColorAt(i / this.size, i % this.size);
+    }
+    return colors;
+  }
+
+  // EFFECT: replaces the colors of this board with the given ones and leaves only the
+  // first square flooded
+  void load(byte[] colors) {
+    for (int i = 0; i < colors.length; i += 1) {
+      this.setDealtColor(i / this.size, i % this.size, colors[i]);
+    }
+    this.startOver();
+  }
+
+  // a new raster that paints this board a tile at a time
+  BoardRaster newRaster() {
+    return new TiledRaster();
+  }
+
+  // EFFECT: takes a snapshot of this board, copying the words of the tiles that changed
+  // since the last snapshot taken or restored onto the heap and sharing the rest with it
+  BoardSnapshot snapshot() {
+    TiledSnapshot last = (TiledSnapshot) this.base;
+    long[][] tiles = new long[this.tileCount][];
+    for (int t = 0; t < this.tileCount; t += 1) {
+      if (last != null && !this.dirty[t]) {
+        tiles[t] = last.tiles[t];
+      }
+      else {
+        tiles[t] = new long[this.stride];
+        LongBuffer words = this.slabOf(t);
+        int base = this.baseOf(t);
+        for (int k = 0; k < this.stride; k += 1) {
+          tiles[t][k] = words.get(base + k);
+        }
+        this.dirty[t] = false;
+      }
+    }
+    this.base = new TiledSnapshot(this.size, this.numColors, tiles, this.floodColor,
+        this.floodedCount, this.remaining.clone());
+    return this.base;
+  }
+
+  // EFFECT: puts this board back in the state of the given snapshot of it, copying only
+  // the tiles that differ from it, and counts the flood of those tiles again
+  void restore(BoardSnapshot snapshot) {
+    TiledSnapshot last = (TiledSnapshot) this.base;
+    TiledSnapshot next = (TiledSnapshot) snapshot;
+    for (int t = 0; t < this.tileCount; t += 1) {
+      if (last == null || this.dirty[t] || last.tiles[t] != next.tiles[t]) {
+        LongBuffer words = this.slabOf(t);
+        int base = this.baseOf(t);
+        for (int k = 0; k < this.stride; k += 1) {
+          words.put(base + k, next.tiles[t][k]);
+        }
+        this.countTile(t);
+        this.dirty[t] = false;
+      }
+    }
+    this.floodColor = next.floodColor;
+    this.floodedCount = next.floodedCount;
+    System.arraycopy(next.remaining, 0, this.remaining, 0, this.remaining.length);
+    this.activateFlooded();
+    this.base = next;
+    this.replaced += 1;
+  }
+
+  // EFFECT: unfloods every square but the first and counts the colors again, after the
+  // squares were dealt
+  void startOver() {
+    for (int t = 0; t < this.tileCount; t += 1) {
+      LongBuffer words = this.slabOf(t);
+      int at = this.baseOf(t) + (this.numColors * TiledBoard.TILE);
+      for (int w = 0; w < TiledBoard.TILE; w += 1) {
+        words.put(at + w, 0);
+      }
+    }
+    LongBuffer first = this.slabOf(0);
+    first.put(this.baseOf(0) + (this.numColors * TiledBoard.TILE), 1L);
+    this.floodColor = this.dealtColorAt(0, 0);
+    this.recount();
+    // the tiles were written without marking any of them
+    this.base = null;
+    this.replaced += 1;
+  }
+
+  // EFFECT: counts the flooded squares and the colors left of every tile again, and
+  // marks the tiles with flooded squares, and the ones around them, as reached by the
+  // flood
+  void recount() {
+    this.floodedCount = 0;
+    Arrays.fill(this.remaining, 0);
+    for (int t = 0; t < this.tileCount; t += 1) {
+      this.countTile(t);
+    }
+    this.activateFlooded();
+  }
+
+  // EFFECT: counts the flooded squares and the colors left of the given tile again,
+  // adding them to the counts of the board
+  void countTile(int tile) {
+    LongBuffer words = this.slabOf(tile);
+    int base = this.baseOf(tile);
+    int floodedAt = base + (this.numColors * TiledBoard.TILE);
+    int mask = 0;
+    for (int c = 0; c < this.numColors; c += 1) {
+      int count = 0;
+      for (int w = 0; w < TiledBoard.TILE; w += 1) {
+        count += Long.bitCount(words.get(base + (c * TiledBoard.TILE) + w)
+            & ~words.get(floodedAt + w));
+      }
+      if (count > 0) {
+        mask |= 1 << c;
+      }
+      this.remaining[c] += count;
+    }
+    int count = 0;
+    for (int w = 0; w < TiledBoard.TILE; w += 1) {
+      count += Long.bitCount(words.get(floodedAt + w));
+    }
+    this.colorsInTile[tile] = mask;
+    this.floodedInTile[tile] = count;
+    this.floodedCount += count;
+  }
+
+  // EFFECT: marks exactly the tiles with flooded squares, and the ones around them, as
+  // reached by the flood
+  void activateFlooded() {
+    this.active.clear();
+    Arrays.fill(this.isActive, false);
+    for (int t = 0; t < this.tileCount; t += 1) {
+      if (this.floodedInTile[t] > 0) {
+        this.activateAround(t);
+      }
+    }
+  }
+
+  // EFFECT: floods the board with the given color, going only through the tiles on
+  // the edge of the flood that still have that color, and returns the squares absorbed
+  // (the list is reused, so it is only valid until the next flood)
+  IndexList flood(int colorIndex) {
+    this.floodColor = colorIndex;
+    this.touched.clear();
+    this.absorbed.clear();
+    this.queue.clear();
+    for (int k = 0; k < this.active.size(); k += 1) {
+      this.enqueue(this.active.get(k), colorIndex);
+    }
+    // ACC: the queue grows as the flood crosses into neighboring tiles
+    for (int k = 0; k < this.queue.size(); k += 1) {
+      int tile = this.queue.get(k);
+      this.queued[tile] = false;
+      this.floodTile(tile, colorIndex);
+    }
+    this.queue.clear();
+    this.compactActive();
+    this.floodedCount += this.absorbed.size();
+    this.remaining[colorIndex] -= this.absorbed.size();
+    return this.absorbed;
+  }
+
+  // EFFECT: takes back a flood, unflooding the given squares it absorbed and setting the
+  // flooding color back to the given one
+  void unflood(IndexList squares, int colorIndex) {
+    for (int k = 0; k < squares.size(); k += 1) {
+      this.clearFlooded(squares.get(k));
+    }
+    this.floodColor = colorIndex;
+  }
+
+  // EFFECT: queues up the given tile for the current move, if it has squares of the
+  // given color left and is not queued already
+  void enqueue(int tile, int colorIndex) {
+    if (!this.queued[tile] && (this.colorsInTile[tile] & (1 << colorIndex)) != 0) {
+      this.queued[tile] = true;
+      this.queue.add(tile);
+    }
+  }
+
+  // EFFECT: marks the given tile as reached by the flood, unless it is full
+  void activate(int tile) {
+    if (!this.isActive[tile] && this.floodedInTile[tile] < this.cellsIn(tile)) {
+      this.isActive[tile] = true;
+      this.active.add(tile);
+    }
+  }
+
+  // EFFECT: marks the given tile and the ones next to it as reached by the flood
+  void activateAround(int tile) {
+    int tx = tile % this.tilesPerSide;
+    int ty = tile / this.tilesPerSide;
+    this.activate(tile);
+    if (tx > 0) {
+      this.activate(tile - 1);
+    }
+    if (tx < this.tilesPerSide - 1) {
+      this.activate(tile + 1);
+    }
+    if (ty > 0) {
+      this.activate(tile - this.tilesPerSide);
+    }
+    if (ty < this.tilesPerSide - 1) {
+      this.activate(tile + this.tilesPerSide);
+    }
+  }
+
+  // EFFECT: drops the tiles that have been completely flooded from the active ones
+  void compactActive() {
+    int kept = 0;
+    for (int k = 0; k < this.active.size(); k += 1) {
+      int tile = this.active.get(k);
+      if (this.floodedInTile[tile] < this.cellsIn(tile)) {
+        this.active.items[kept] = tile;
+        kept += 1;
+      }
+      else {
+        this.isActive[tile] = false;
+      }
+    }
+    this.active.count = kept;
+  }
+
+  // EFFECT: floods the squares of the given color in the given tile that are connected
+  // to the flood, inside the tile or across its edges, adds them to the absorbed
+  // squares and queues up the neighboring tiles the flood reaches
+  void floodTile(int tile, int colorIndex) {
+    int tx = tile % this.tilesPerSide;
+    int ty = tile / this.tilesPerSide;
+    int width = this.widthOf(tx);
+    int height = this.widthOf(ty);
+    LongBuffer words = this.slabOf(tile);
+    int base = this.baseOf(tile);
+    int floodedAt = base + (this.numColors * TiledBoard.TILE);
+    for (int w = 0; w < width; w += 1) {
+      this.reached[w] = words.get(floodedAt + w);
+      this.plane[w] = words.get(base + (colorIndex * TiledBoard.TILE) + w) & ~this.reached[w];
+      this.outside[w] = 0;
+    }
+    this.gatherOutside(tx, ty, width, height);
+    long firstColumn = this.reached[0];
+    long lastColumn = this.reached[width - 1];
+    long firstRow = 0;
+    long lastRow = 0;
+    int absorbed = 0;
+    boolean changed = true;
+    while (changed) {
+      changed = false;
+      for (int w = 0; w < width; w += 1) {
+        absorbed += this.growColumn(w, width);
+      }
+      for (int w = width - 1; w >= 0; w -= 1) {
+        int grown = this.growColumn(w, width);
+        absorbed += grown;
+        changed = changed || grown > 0;
+      }
+    }
+    if (absorbed == 0) {
+      return;
+    }
+    int mask = 0;
+    for (int w = 0; w < width; w += 1) {
+      long fresh = this.reached[w] & ~words.get(floodedAt + w);
+      firstRow |= fresh & 1L;
+      lastRow |= (fresh >>> (height - 1)) & 1L;
+      words.put(floodedAt + w, this.reached[w]);
+      int column = (((tx << TiledBoard.TILE_BITS) + w) * this.size) + (ty << TiledBoard.TILE_BITS);
+      for (long rest = fresh; rest != 0; rest &= rest - 1) {
+        this.absorbed.add(column + Long.numberOfTrailingZeros(rest));
+      }
+    }
+    for (int c = 0; c < this.numColors; c += 1) {
+      for (int w = 0; w < width; w += 1) {
+        if ((words.get(base + (c * TiledBoard.TILE) + w) & ~this.reached[w]) != 0) {
+          mask |= 1 << c;
+          break;
+        }
+      }
+    }
+    this.colorsInTile[tile] = mask;
+    this.floodedInTile[tile] += absorbed;
+    this.dirty[tile] = true;
+    this.touched.add(tile);
+    // the neighbors on the edges that were newly flooded are now reached by the flood
+    if (tx > 0 && this.reached[0] != firstColumn) {
+      this.reach(tile - 1, colorIndex);
+    }
+    if (tx < this.tilesPerSide - 1 && this.reached[width - 1] != lastColumn) {
+      this.reach(tile + 1, colorIndex);
+    }
+    if (ty > 0 && firstRow != 0) {
+      this.reach(tile - this.tilesPerSide, colorIndex);
+    }
+    if (ty < this.tilesPerSide - 1 && lastRow != 0) {
+      this.reach(tile + this.tilesPerSide, colorIndex);
+    }
+  }
+
+  // EFFECT: marks the given tile as reached by the flood and queues it up for the
+  // current move
+  void reach(int tile, int colorIndex) {
+    this.activate(tile);
+    this.enqueue(tile, colorIndex);
+  }
+
+  // EFFECT: sets the outside words of the tile at (tx, ty) to the flooded squares of
+  // its neighbors that touch it, moved to the squares they touch
+  void gatherOutside(int tx, int ty, int width, int height) {
+    int tile = (ty * this.tilesPerSide) + tx;
+    if (tx > 0) {
+      this.outside[0] |= this.floodedWord(tile - 1, TiledBoard.TILE - 1);
+    }
+    if (tx < this.tilesPerSide - 1) {
+      this.outside[width - 1] |= this.floodedWord(tile + 1, 0);
+    }
+    if (ty > 0 && this.floodedInTile[tile - this.tilesPerSide] > 0) {
+      for (int w = 0; w < width; w += 1) {
+        this.outside[w] |= this.floodedWord(tile - this.tilesPerSide, w) >>> 63;
+      }
+    }
+    if (ty < this.tilesPerSide - 1 && this.floodedInTile[tile + this.tilesPerSide] > 0) {
+      for (int w = 0; w < width; w += 1) {
+        this.outside[w] |= (this.floodedWord(tile + this.tilesPerSide, w) & 1L)
+            << (height - 1);
+      }
+    }
+  }
+
+  // EFFECT: floods the squares of the given column of the current tile that are next
+  // to the flood, along with the rest of their runs up and down the column, returning
+  // how many were absorbed
+  int growColumn(int w, int width) {
+    long candidates = this.plane[w] & ~this.reached[w];
+    if (candidates == 0) {
+      return 0;
+    }
+    long beside = this.outside[w] | (this.reached[w] << 1) | (this.reached[w] >>> 1);
+    if (w > 0) {
+      beside |= this.reached[w - 1];
+    }
+    if (w < width - 1) {
+      beside |= this.reached[w + 1];
+    }
+    long seeds = candidates & beside;
+    if (seeds == 0) {
+      return 0;
+    }
+    // spread along the runs of candidates towards the higher bits, then the lower ones
+    long up = ((candidates + seeds) ^ candidates) & candidates;
+    long reversed = Long.reverse(candidates);
+    long down = Long.reverse(((reversed + Long.reverse(seeds)) ^ reversed) & reversed);
+    long grown = seeds | up | down;
+    this.reached[w] |= grown;
+    return Long.bitCount(grown);
+  }
+
+  // deals a board of the given size (20000 if not given) and number of colors (6 if
+  // not given) off the heap and plays the given number of moves (1000 if not given)
+  // on it through a FloodGame, cycling through the colors that are left, and prints
+  // how long the moves took and how much heap was in use
+  public static void main(String[] args) {
+    int size = 20000;
+    int numColors = 6;
+    int limit = 1000;
+    if (args.length > 0) {
+      size = Integer.parseInt(args[0]);
+    }
+    if (args.length > 1) {
+      numColors = Integer.parseInt(args[1]);
+    }
+    if (args.length > 2) {
+      limit = Integer.parseInt(args[2]);
+    }
+    long start = System.nanoTime();
+    FloodGame game = new FloodGame(size, numColors, new TiledFloodEngine(), 1);
+    System.out.println(String.format("dealt %dx%d in %.0f ms", size, size,
+        (System.nanoTime() - start) / 1e6));
+    IMovePolicy policy = new CycleMovePolicy();
+    long slowest = 0;
+    start = System.nanoTime();
+    while (!game.allFloodedCheck() && game.steps < limit) {
+      long moveStart = System.nanoTime();
+      game.applyMove(policy.chooseMove(game, null));
+      slowest = Math.max(slowest, System.nanoTime() - moveStart);
+    }
+    Runtime runtime = Runtime.getRuntime();
+    System.out.println(String.format(
+        "%d moves, %d squares flooded, %d tiles reached, %.2f ms/move, slowest %.1f ms,"
+            + " heap %d MB",
+        game.steps, game.floodedCount(), ((TiledBoard) game.board).active.size(),
+        (System.nanoTime() - start) / 1e6 / Math.max(1, game.steps), slowest / 1e6,
+        (runtime.totalMemory() - runtime.freeMemory()) >> 20));
+  }
+}
+
+// Represents the state of a TiledBoard at one moment, as a copy of the words of every
+// tile on the heap. Snapshots taken one after the other share the tiles that did not
+// change in between
+class TiledSnapshot extends BoardSnapshot {
+  // The number of colors the board was dealt with
+  int numColors;
+  // The words of every tile, laid out as on the board
+  long[][] tiles;
+  // The color of the flooded squares
+  int floodColor;
+
+  TiledSnapshot(int size, int numColors, long[][] tiles, int floodColor, int floodedCount,
+      int[] remaining) {
+    super(size, null, null, floodedCount, remaining);
+    this.numColors = numColors;
+    this.tiles = tiles;
+    this.floodColor = floodColor;
+  }
+
+  // a new tiled board with the given palette that this snapshot can be restored to
+  Board newBoard(ArrayList<Color> palette, ITopology topology) {
+    return new TiledBoard(this.size, palette, this.numColors);
+  }
+
+  // the palette index of the square at the given index, flooded squares all share
+  // the flooding color
+  int colorIndexAt(int index) {
+    int x = index / this.size;
+    int y = index % this.size;
+    int tilesPerSide = ((this.size - 1) >>> TiledBoard.TILE_BITS) + 1;
+    long[] words = this.tiles[((y >>> TiledBoard.TILE_BITS) * tilesPerSide)
+        + (x >>> TiledBoard.TILE_BITS)];
+    int column = x & (TiledBoard.TILE - 1);
+    if ((words[(this.numColors * TiledBoard.TILE) + column] & (1L << y)) != 0) {
+      return this.floodColor;
+    }
+    for (int c = 0; c < this.numColors; c += 1) {
+      if ((words[(c * TiledBoard.TILE) + column] & (1L << y)) != 0) {
+        return c;
+      }
+    }
+    return 0;
+  }
+}
+
+// Floods a TiledBoard through its tiles, which keep everything the flood needs: a move
+// only goes through the tiles on the edge of the flood that still have the color played
+class TiledFloodEngine implements IFloodEngine {
+  // a tiled board of the given size, which must be a plain grid
+  public Board newBoard(int size, int numColors, ArrayList<Color> palette,
+      ITopology topology) {
+    if (!(topology instanceof GridTopology)) {
+      throw new IllegalArgumentException(
+          "Cannot flood a " + topology.name() + " board with tiles");
+    }
+    return new TiledBoard(size, palette, numColors);
+  }
+
+  // EFFECT: absorbs everything connected to the flooded squares of the given board in
+  // the flooding color. The board keeps its own counts, so there is nothing to forget
+  public void reset(Board board) {
+    TiledBoard tiled = (TiledBoard) board;
+    tiled.flood(tiled.floodColor);
+  }
+
+  // EFFECT: floods the given board with the given color
+  public IndexList flood(Board board, int colorIndex) {
+    return ((TiledBoard) board).flood(colorIndex);
+  }
+
+  // has the flood covered the whole given board?
+  public boolean isComplete(Board board) {
+    return board.allFlooded();
+  }
+
+  // EFFECT: unfloods the given squares and sets the flooding color back to the given one
+  public void unflood(Board board, IndexList squares, int colorIndex) {
+    ((TiledBoard) board).unflood(squares, colorIndex);
+  }
+}
+
+// Paints a TiledBoard into a pixel buffer, one pixel per square, going tile by tile: the
+// whole board, shown scaled up like any other board of a world, or a window of it. A
+// tile is painted again only when its flooded squares changed or the flooding color
+// changed while part of it was flooded, so the tiles the flood has not reached are
+// painted once. A move shows all at once, without a wave
+class TiledRaster extends BoardRaster {
+  // The number of squares along each side of the window, or 0 for the whole board
+  int view;
+  // The square at the top left of the window
+  int left;
+  int top;
+  // The flooded squares of every tile and the flooding color when it was last painted,
+  // with -1 for tiles never painted
+  int[] paintedCounts;
+  int[] paintedFloods;
+
+  TiledRaster() {
+    this(0);
+  }
+
+  TiledRaster(int view) {
+    this.view = view;
+  }
+
+  // EFFECT: brings the pixels up to date with the whole given board, then produces the
+  // image of it
+  WorldImage draw(Board board) {
+    this.draw((TiledBoard) board, 0, 0);
+    return this.image;
+  }
+
+  // EFFECT: brings the window with the given top left square up to date with the given
+  // board, then produces its pixels
+  ComputedPixelImage draw(TiledBoard board, int left, int top) {
+    int side = this.sideFor(board);
+    if (board != this.board || left != this.left || top != this.top) {
+      this.board = board;
+      this.left = left;
+      this.top = top;
+      this.pixels = new ComputedPixelImage(side, side);
+      this.image = new ScaleImage(this.pixels, 50).movePinholeTo(new Posn(0, 0));
+      this.paintedCounts = new int[board.tileCount];
+      this.paintedFloods = new int[board.tileCount];
+      Arrays.fill(this.paintedCounts, -1);
+    }
+    else if (board.replaced != this.paintedReplaced) {
+      // the board was dealt again in place
+      Arrays.fill(this.paintedCounts, -1);
+    }
+    this.paintedReplaced = board.replaced;
+    int right = Math.min(board.size, left + side);
+    int bottom = Math.min(board.size, top + side);
+    for (int ty = top >>> TiledBoard.TILE_BITS; ty <= (bottom - 1) >>> TiledBoard.TILE_BITS;
+        ty += 1) {
+      for (int tx = left >>> TiledBoard.TILE_BITS;
+          tx <= (right - 1) >>> TiledBoard.TILE_BITS; tx += 1) {
+        int tile = (ty * board.tilesPerSide) + tx;
+        int count = board.floodedInTile[tile];
+        if (count != this.paintedCounts[tile]
+            || (count > 0 && board.floodColor != this.paintedFloods[tile])) {
+          this.paintTile(board, tx, ty, right, bottom);
+          this.paintedCounts[tile] = count;
+          this.paintedFloods[tile] = board.floodColor;
+        }
+      }
+    }
+    return this.pixels;
+  }
+
+  // the number of squares along each side of the window on the given board
+  int sideFor(TiledBoard board) {
+    if (this.view == 0) {
+      return board.size;
+    }
+    else {
+      return this.view;
+    }
+  }
+
+  // EFFECT: paints the squares of the tile at (tx, ty) of the given board that are in
+  // the window
+  void paintTile(TiledBoard board, int tx, int ty, int right, int bottom) {
+    int x0 = Math.max(this.left, tx << TiledBoard.TILE_BITS);
+    int y0 = Math.max(this.top, ty << TiledBoard.TILE_BITS);
+    int x1 = Math.min(right, (tx + 1) << TiledBoard.TILE_BITS);
+    int y1 = Math.min(bottom, (ty + 1) << TiledBoard.TILE_BITS);
+    for (int x = x0; x < x1; x += 1) {
+      for (int y = y0; y < y1; y += 1) {
+        this.pixels.setPixel(x - this.left, y - this.top,
+            board.palette.get(board.colorIndexAt(x, y)));
+      }
+    }
+  }
+
+  // a tiled board is painted a tile at a time, never square by square
+  boolean paints(Board board) {
+    return false;
+  }
+
+  // EFFECT: paints again the tiles of the given squares, which may have been unflooded
+  // since
+  void repaint(IndexList squares) {
+    TiledBoard board = (TiledBoard) this.board;
+    for (int k = 0; k < squares.size(); k += 1) {
+      int index = squares.get(k);
+      this.paintedCounts[board.tileAt(index / board.size, index % board.size)] = -1;
+    }
+  }
+}
@@ -0,0 +1,177 @@
+import java.util.concurrent.ConcurrentHashMap;
+
+// Represents the shape of a board: which of its squares are next to which, and which
+// square is drawn where. Whatever the shape, a board of a given size has size * size
+// squares, numbered column by column so the square at (x, y) lives at (x * size) + y
+interface ITopology {
+  // the name boards of this shape are known by
+  String name();
+
+  // EFFECT: writes the indices of the squares next to the square at (x, y) of a board
+  // of the given size into the given buffer (of length at least Board.MAX_DEGREE),
+  // returning how many there are
+  int neighbors(int size, int x, int y, int[] into);
+
+  // the index of the square drawn at the given column and row of a board of the given
+  // size, or -1 if there is none
+  int indexAt(int size, int column, int row);
+}
+
+// A shape whose squares are drawn in a size x size grid, each in its own column and row
+abstract class SquareTopology implements ITopology {
+  // the index of the square drawn at the given column and row of a board of the given
+  // size, or -1 if there is none
+  public int indexAt(int size, int column, int row) {
+    if (column < 0 || column >= size || row < 0 || row >= size) {
+      return -1;
+    }
+    else {
+      return (column * size) + row;
+    }
+  }
+
+  // EFFECT: writes the index of the square at (x, y) into the given buffer after the
+  // given number of neighbors, if the board of the given size has that square and it
+  // is not there already, returning how many neighbors there are now
+  int add(int size, int x, int y, int[] into, int count) {
+    if (x < 0 || x >= size || y < 0 || y >= size) {
+      return count;
+    }
+    int index = (x * size) + y;
+    for (int k = 0; k < count; k += 1) {
+      if (into[k] == index) {
+        return count;
+      }
+    }
+    into[count] = index;
+    return count + 1;
+  }
+}
+
+// The squares above, below, left and right of a square, up to the edges of the board
+class GridTopology extends SquareTopology {
+  public String name() {
+    return "grid";
+  }
+
+  public int neighbors(int size, int x, int y, int[] into) {
+    int count = this.add(size, x, y - 1, into, 0);
+    count = this.add(size, x, y + 1, into, count);
+    count = this.add(size, x - 1, y, into, count);
+    return this.add(size, x + 1, y, into, count);
+  }
+}
+
+// The grid with its opposite edges joined, so the flood runs off one edge and comes
+// back on the other
+class TorusTopology extends SquareTopology {
+  public String name() {
+    return "torus";
+  }
+
+  public int neighbors(int size, int x, int y, int[] into) {
+    int above = Math.floorMod(y - 1, size);
+    int below = (y + 1) % size;
+    int left = Math.floorMod(x - 1, size);
+    int right = (x + 1) % size;
+    int count = 0;
+    // on the smallest boards a square can meet itself around the edges
+    if (above != y) {
+      count = this.add(size, x, above, into, count);
+    }
+    if (below != y) {
+      count = this.add(size, x, below, into, count);
+    }
+    if (left != x) {
+      count = this.add(size, left, y, into, count);
+    }
+    if (right != x) {
+      count = this.add(size, right, y, into, count);
+    }
+    return count;
+  }
+}
+
+// The grid with the diagonal squares too, every square touching the eight around it
+class KingTopology extends SquareTopology {
+  public String name() {
+    return "king";
+  }
+
+  public int neighbors(int size, int x, int y, int[] into) {
+    int count = 0;
+    for (int dx = -1; dx <= 1; dx += 1) {
+      for (int dy = -1; dy <= 1; dy += 1) {
+        if (dx != 0 || dy != 0) {
+          count = this.add(size, x + dx, y + dy, into, count);
+        }
+      }
+    }
+    return count;
+  }
+}
+
+// Hexagons laid out as a rhombus and drawn sheared onto the grid: besides the squares
+// above, below, left and right, every square touches the one up and to the right and
+// the one down and to the left, for six neighbors
+class HexTopology extends SquareTopology {
+  public String name() {
+    return "hex";
+  }
+
+  public int neighbors(int size, int x, int y, int[] into) {
+    int count = this.add(size, x, y - 1, into, 0);
+    count = this.add(size, x, y + 1, into, count);
+    count = this.add(size, x - 1, y, into, count);
+    count = this.add(size, x + 1, y, into, count);
+    count = this.add(size, x + 1, y - 1, into, count);
+    return this.add(size, x - 1, y + 1, into, count);
+  }
+}
+
+// The neighbors of every square of a board of one shape and size, in one flat table:
+// the neighbors of square i are adjacent[start[i]] up to adjacent[start[i + 1]]. A
+// table is built the first time a board of its shape and size is made, then shared
+// by every board like it
+class Adjacency {
+  // The shape and size of the boards this table is for
+  ITopology topology;
+  int size;
+  // Where the neighbors of every square start in adjacent, and one past the last
+  int[] start;
+  // The neighbors of every square, one square after the other
+  int[] adjacent;
+
+  // The tables built so far, by shape and size
+  static final ConcurrentHashMap<String, Adjacency> TABLES =
+      new ConcurrentHashMap<String, Adjacency>();
+  // The most squares a board can have to get a table. Bigger boards work out the
+  // neighbors of a square when they are asked for, instead of keeping 20 bytes a square
+  static final int MAX_CELLS = 1 << 18;
+
+  Adjacency(ITopology topology, int size) {
+    this.topology = topology;
+    this.size = size;
+    int cells = size * size;
+    this.start = new int[cells + 1];
+    int[] into = new int[Board.MAX_DEGREE];
+    for (int i = 0; i < cells; i += 1) {
+      this.start[i + 1] = this.start[i] + topology.neighbors(size, i / size, i % size, into);
+    }
+    this.adjacent = new int[this.start[cells]];
+    for (int i = 0; i < cells; i += 1) {
+      int count = topology.neighbors(size, i / size, i % size, into);
+      System.arraycopy(into, 0, this.adjacent, this.start[i], count);
+    }
+  }
+
+  // the table of the boards of the given shape and size, shared by all of them, or
+  // null if the boards are too big to have one
+  static Adjacency of(ITopology topology, int size) {
+    if ((long) size * size > Adjacency.MAX_CELLS) {
+      return null;
+    }
+    return Adjacency.TABLES.computeIfAbsent(topology.name() + " " + size,
+        key -> new Adjacency(topology, size));
+  }
+}